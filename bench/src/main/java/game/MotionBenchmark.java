@@ -0,0 +1,155 @@
+package game;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Check and JMH benchmark of EntityStore.move() against the plain savePositions(), integrate() and bounce() it replaces.
+ *
+ * main() runs every kernel side by side with the plain methods on the same random entities, a lot of them outside the
+ * box or right on a wall, for a few hundred ticks, and every position, velocity and previous position has to come out
+ * bit for bit the same. It exits with status 1 if anything differs. The vector kernel is only checked when the JVM was
+ * started with --add-modules jdk.incubator.vector.
+ *
+ * The benchmark times one tick of moving every entity:
+ *
+ *      kernel   -- scalar (the plain methods), blocked (move()), vector (move() with game.VectorMotion)
+ *      order    -- targets (move, then bounce), bombs (bounce, then move)
+ *      count    -- 1000, 100000, 1000000
+ *
+ * Its forks are started with --add-modules jdk.incubator.vector, so it needs JDK 16 or later to run.
+ *
+ * Run with: java --add-modules jdk.incubator.vector -cp target/benchmarks.jar game.MotionBenchmark (the check)
+ *           java -jar target/benchmarks.jar MotionBenchmark [-p count=1000000] [-prof gc]
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class MotionBenchmark
+{
+    /**SAME BOX AND TIMESTEP AS THE GAME**/
+    static final double BOX_WIDTH = 500, BOX_HEIGHT = 300, BEGIN_Z = -5000, END_Z = -5500;
+    static final long TIME = 16000000;
+    static final double TARGET_SCALE = 2500000.0, BOMB_SCALE = 500000000.0;
+    static final int CHECK_TICKS = 300;
+
+    static final String[] KERNELS = {"blocked", "vector"};
+
+    @Param({"scalar", "blocked", "vector"})
+    public String kernel;
+
+    @Param({"targets", "bombs"})
+    public String order;
+
+    @Param({"1000", "100000", "1000000"})
+    public int count;
+
+    EntityStore store;
+    boolean bombs, scalar;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        store = randomStore(count, new Random(1));
+        bombs = order.equals("bombs");
+        scalar = kernel.equals("scalar");
+        if(kernel.equals("vector") && !store.useVectorKernel())
+            throw new IllegalStateException("game.VectorMotion did not load, it needs JDK 16+ and --add-modules jdk.incubator.vector");
+    }
+
+    @Benchmark
+    public int move()
+    {
+        if(scalar)
+            plain(store, bombs);
+        else
+            store.move(TIME, bombs ? BOMB_SCALE : TARGET_SCALE, bombs, BOX_WIDTH, BOX_HEIGHT, BEGIN_Z, END_Z);
+        return store.count;
+    }
+
+    public static void main(String[] args)
+    {
+        int failures = 0;
+        for(String kernel : KERNELS)
+        {
+            if(kernel.equals("vector") && EntityStore.VECTOR == null)
+            {
+                System.out.println("vector kernel not loaded, not checked (needs --add-modules jdk.incubator.vector)");
+                continue;
+            }
+            //odd counts too, so the vector kernel's leftovers are checked
+            failures += check(10000, false, kernel) + check(10000, true, kernel) + check(10003, false, kernel) + check(10003, true, kernel);
+        }
+        System.out.println(failures == 0 ? "kernels matched the plain methods" : failures + " values did not match the plain methods");
+        if(failures != 0)
+            System.exit(1);
+    }
+
+    /**FUNCTION TO MOVE A STORE WITH THE PLAIN METHODS, IN THE ORDER THE SIMULATION CALLS THEM**/
+    static void plain(EntityStore store, boolean bombs)
+    {
+        store.savePositions();
+        if(bombs)
+        {
+            store.bounce(BOX_WIDTH, BOX_HEIGHT, BEGIN_Z, END_Z);
+            store.integrate(TIME, BOMB_SCALE);
+        }
+        else
+        {
+            store.integrate(TIME, TARGET_SCALE);
+            store.bounce(BOX_WIDTH, BOX_HEIGHT, BEGIN_Z, END_Z);
+        }
+    }
+
+    /**FUNCTION TO RUN THE PLAIN METHODS AND move() WITH A KERNEL ON TWO COPIES OF THE SAME ENTITIES, RETURNS HOW MANY VALUES DIFFERED**/
+    static int check(int n, boolean bombs, String kernel)
+    {
+        EntityStore expected = randomStore(n, new Random(n));
+        EntityStore actual = randomStore(n, new Random(n));
+        if(kernel.equals("vector"))
+            actual.useVectorKernel();
+        int failures = 0;
+        for(int tick = 0; tick < CHECK_TICKS; tick++)
+        {
+            plain(expected, bombs);
+            actual.move(TIME, bombs ? BOMB_SCALE : TARGET_SCALE, bombs, BOX_WIDTH, BOX_HEIGHT, BEGIN_Z, END_Z);
+            failures += differences(expected.posx, actual.posx, n) + differences(expected.posy, actual.posy, n) + differences(expected.posz, actual.posz, n);
+            failures += differences(expected.velx, actual.velx, n) + differences(expected.vely, actual.vely, n) + differences(expected.velz, actual.velz, n);
+            failures += differences(expected.prevx, actual.prevx, n) + differences(expected.prevy, actual.prevy, n) + differences(expected.prevz, actual.prevz, n);
+        }
+        return failures;
+    }
+
+    /**FUNCTION TO COUNT THE VALUES THAT ARE NOT BIT FOR BIT THE SAME**/
+    static int differences(double[] a, double[] b, int n)
+    {
+        int count = 0;
+        for(int i = 0; i < n; i++)
+        {
+            if(Double.doubleToRawLongBits(a[i]) != Double.doubleToRawLongBits(b[i]))
+                count++;
+        }
+        return count;
+    }
+
+    /**FUNCTION TO MAKE n ENTITIES IN AND AROUND THE BOX, SOME ON A WALL, MOVING AS FAST AS BOMBS OR TARGETS DO**/
+    static EntityStore randomStore(int n, Random random)
+    {
+        EntityStore store = new EntityStore(n, 2.5);
+        for(int i = 0; i < n; i++)
+        {
+            double x = (random.nextDouble()*2.2 - 1.1)*BOX_WIDTH;
+            double y = (random.nextDouble()*2.2 - 1.1)*BOX_HEIGHT;
+            double z = END_Z - 50 + random.nextDouble()*(BEGIN_Z - END_Z + 100);
+            if(random.nextInt(20) == 0)
+                x = random.nextBoolean() ? BOX_WIDTH : -BOX_WIDTH;
+            double speed = random.nextBoolean() ? 300 : 0.1;
+            store.add(x, y, z, random.nextGaussian()*speed, random.nextGaussian()*speed, random.nextGaussian()*speed, 5.0, 0, 0, 0);
+        }
+        return store;
+    }
+}
@@ -0,0 +1,175 @@
+package queue;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * JMH contention benchmark of RingQueue against java.util.concurrent.ArrayBlockingQueue.
+ *
+ * Producer threads offer() and consumer threads poll() one queue of CAPACITY slots at the same time, with the
+ * non-blocking calls of both queues. Every @Group is one mix of threads:
+ *
+ *      p1c1  -- 1 producer, 1 consumer
+ *      p2c2  -- 2 producers, 2 consumers
+ *      p4c4  -- 4 producers, 4 consumers
+ *      p4c1  -- 4 producers, 1 consumer
+ *      p1c4  -- 1 producer, 4 consumers
+ *
+ * and the queue is a @Param:
+ *
+ *      queue  -- ring (RingQueue), abq (ArrayBlockingQueue, one lock for both ends)
+ *
+ * The score of a group counts every call, also the ones that found the queue full or empty. The offered and polled
+ * counters only count calls that moved an element, so they are the rate elements go through the queue, and full and
+ * empty are the calls that did not. Other mixes can be run with -tg, e.g. -tg 3,2 for three producers and two
+ * consumers. With fewer cores than threads the numbers say more about the scheduler than the queue.
+ *
+ * Run with: java -jar target/benchmarks.jar ContentionBenchmark [-p queue=ring] [-prof gc]
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentionBenchmark
+{
+    /**HOW MANY ELEMENTS FIT IN THE QUEUE, AND HOW MANY DIFFERENT ONES THE PRODUCERS GO ROUND**/
+    static final int CAPACITY = 1024;
+    static final int ITEMS = 1 << 16;
+
+    /**THE SAME TWO CALLS ON BOTH QUEUES**/
+    interface Queue
+    {
+        boolean offer(Integer data);
+        Integer poll();
+    }
+
+    /**THE QUEUE EVERY THREAD OF A GROUP SHARES, NEW FOR EVERY ITERATION**/
+    @State(Scope.Group)
+    public static class Shared
+    {
+        @Param({"ring", "abq"})
+        public String queue;
+
+        final Integer[] items = new Integer[ITEMS];
+        Queue q;
+
+        @Setup(Level.Trial)
+        public void setUpItems()
+        {
+            for(int i = 0; i < ITEMS; i++)
+                items[i] = i;
+        }
+
+        @Setup(Level.Iteration)
+        public void setUpQueue()
+        {
+            q = newQueue(queue);
+        }
+    }
+
+    /**WHAT ONE PRODUCER DID, JMH ADDS THE COUNTERS UP OVER THE THREADS**/
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Producer
+    {
+        public long offered, full;
+        int next;
+
+        @Setup(Level.Iteration)
+        public void clear()
+        {
+            offered = full = 0;
+        }
+    }
+
+    /**WHAT ONE CONSUMER DID**/
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Consumer
+    {
+        public long polled, empty;
+
+        @Setup(Level.Iteration)
+        public void clear()
+        {
+            polled = empty = 0;
+        }
+    }
+
+    @Benchmark @Group("p1c1") @GroupThreads(1)
+    public boolean offer1x1(Shared s, Producer p) { return offer(s, p); }
+
+    @Benchmark @Group("p1c1") @GroupThreads(1)
+    public Integer poll1x1(Shared s, Consumer c) { return poll(s, c); }
+
+    @Benchmark @Group("p2c2") @GroupThreads(2)
+    public boolean offer2x2(Shared s, Producer p) { return offer(s, p); }
+
+    @Benchmark @Group("p2c2") @GroupThreads(2)
+    public Integer poll2x2(Shared s, Consumer c) { return poll(s, c); }
+
+    @Benchmark @Group("p4c4") @GroupThreads(4)
+    public boolean offer4x4(Shared s, Producer p) { return offer(s, p); }
+
+    @Benchmark @Group("p4c4") @GroupThreads(4)
+    public Integer poll4x4(Shared s, Consumer c) { return poll(s, c); }
+
+    @Benchmark @Group("p4c1") @GroupThreads(4)
+    public boolean offer4x1(Shared s, Producer p) { return offer(s, p); }
+
+    @Benchmark @Group("p4c1") @GroupThreads(1)
+    public Integer poll4x1(Shared s, Consumer c) { return poll(s, c); }
+
+    @Benchmark @Group("p1c4") @GroupThreads(1)
+    public boolean offer1x4(Shared s, Producer p) { return offer(s, p); }
+
+    @Benchmark @Group("p1c4") @GroupThreads(4)
+    public Integer poll1x4(Shared s, Consumer c) { return poll(s, c); }
+
+    /**FUNCTION FOR A PRODUCER TO OFFER ITS NEXT ELEMENT ONCE, COUNTING WHETHER IT WENT IN**/
+    static boolean offer(Shared s, Producer p)
+    {
+        if(s.q.offer(s.items[p.next]))
+        {
+            p.next = (p.next + 1) & (ITEMS - 1);
+            p.offered++;
+            return true;
+        }
+        p.full++;
+        return false;
+    }
+
+    /**FUNCTION FOR A CONSUMER TO POLL ONCE, COUNTING WHETHER IT GOT ANYTHING**/
+    static Integer poll(Shared s, Consumer c)
+    {
+        Integer data = s.q.poll();
+        if(data != null)
+            c.polled++;
+        else
+            c.empty++;
+        return data;
+    }
+
+    /**FUNCTION TO MAKE THE QUEUE WITH A GIVEN NAME**/
+    static Queue newQueue(String name)
+    {
+        if(name.equals("ring"))
+        {
+            final RingQueue<Integer> ring = new RingQueue<Integer>(CAPACITY);
+            return new Queue() {
+                public boolean offer(Integer data) { return ring.offer(data); }
+                public Integer poll() { return ring.poll(); }
+            };
+        }
+        if(name.equals("abq"))
+        {
+            final ArrayBlockingQueue<Integer> abq = new ArrayBlockingQueue<Integer>(CAPACITY);
+            return new Queue() {
+                public boolean offer(Integer data) { return abq.offer(data); }
+                public Integer poll() { return abq.poll(); }
+            };
+        }
+        throw new IllegalArgumentException("unknown queue: " + name);
+    }
+}
@@ -0,0 +1,158 @@
+package queue;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * JMH benchmark of ArrayQueue against java.util.ArrayDeque.
+ *
+ * One operation runs a whole pattern through a queue:
+ *
+ *      bfs       -- level order through a complete binary tree of n nodes, the way iterativeLevelOrder() goes
+ *      burst     -- n enqueues, then n dequeues
+ *      sawtooth  -- n/16 rounds of 16 enqueues and 16 dequeues, the queue going up and down around one size
+ *
+ * with these queues:
+ *
+ *      ArrayQueue        -- new ArrayQueue() for every operation, starts at capacity 16
+ *      ArrayQueue-hint   -- new ArrayQueue(n) for every operation
+ *      ArrayQueue-reused -- one ArrayQueue(16) kept between operations
+ *      ArrayDeque        -- new ArrayDeque() for every operation
+ *
+ * Run with: java -jar target/benchmarks.jar QueueBenchmark [-prof gc] [-p queue=ArrayQueue,ArrayDeque] [-p n=1000]
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueBenchmark
+{
+    @Param({"ArrayQueue", "ArrayQueue-hint", "ArrayQueue-reused", "ArrayDeque"})
+    public String queue;
+
+    @Param({"1000", "100000"})
+    public int n;
+
+    Integer[] items;
+    ArrayQueue<Integer> reused;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        items = new Integer[n];
+        for(int i = 0; i < n; i++)
+            items[i] = i;
+        reused = new ArrayQueue<Integer>(16);
+    }
+
+    @Benchmark
+    public long bfs()
+    {
+        return play("bfs");
+    }
+
+    @Benchmark
+    public long burst()
+    {
+        return play("burst");
+    }
+
+    @Benchmark
+    public long sawtooth()
+    {
+        return play("sawtooth");
+    }
+
+    /**FUNCTION TO RUN A PATTERN THROUGH THE QUEUE OF THIS TRIAL, RETURNS THE SUM OF WHAT CAME OUT**/
+    long play(String pattern)
+    {
+        if(queue.equals("ArrayDeque"))
+            return play(new ArrayDeque<Integer>(), pattern, items);
+        if(queue.equals("ArrayQueue-hint"))
+            return play(new ArrayQueue<Integer>(items.length), pattern, items);
+        if(queue.equals("ArrayQueue-reused"))
+            return play(reused, pattern, items);
+        if(queue.equals("ArrayQueue"))
+            return play(new ArrayQueue<Integer>(), pattern, items);
+        throw new IllegalArgumentException("unknown queue " + queue);
+    }
+
+    /**FUNCTION TO RUN A PATTERN THROUGH AN ArrayQueue, RETURNS THE SUM OF WHAT CAME OUT**/
+    static long play(ArrayQueue<Integer> q, String pattern, Integer[] items)
+    {
+        int n = items.length;
+        long sum = 0;
+        if(pattern.equals("bfs"))
+        {
+            q.enqueue(items[0]);
+            while(!q.isEmpty())
+            {
+                int i = q.dequeue();
+                sum += i;
+                if(2*i + 1 < n)
+                    q.enqueue(items[2*i + 1]);
+                if(2*i + 2 < n)
+                    q.enqueue(items[2*i + 2]);
+            }
+        }
+        else if(pattern.equals("burst"))
+        {
+            for(int i = 0; i < n; i++)
+                q.enqueue(items[i]);
+            for(int i = 0; i < n; i++)
+                sum += q.dequeue();
+        }
+        else
+        {
+            for(int round = 0; round + 16 <= n; round += 16)
+            {
+                for(int i = 0; i < 16; i++)
+                    q.enqueue(items[round + i]);
+                for(int i = 0; i < 16; i++)
+                    sum += q.dequeue();
+            }
+        }
+        return sum;
+    }
+
+    /**SAME PATTERNS THROUGH AN ArrayDeque**/
+    static long play(ArrayDeque<Integer> q, String pattern, Integer[] items)
+    {
+        int n = items.length;
+        long sum = 0;
+        if(pattern.equals("bfs"))
+        {
+            q.addLast(items[0]);
+            while(!q.isEmpty())
+            {
+                int i = q.pollFirst();
+                sum += i;
+                if(2*i + 1 < n)
+                    q.addLast(items[2*i + 1]);
+                if(2*i + 2 < n)
+                    q.addLast(items[2*i + 2]);
+            }
+        }
+        else if(pattern.equals("burst"))
+        {
+            for(int i = 0; i < n; i++)
+                q.addLast(items[i]);
+            for(int i = 0; i < n; i++)
+                sum += q.pollFirst();
+        }
+        else
+        {
+            for(int round = 0; round + 16 <= n; round += 16)
+            {
+                for(int i = 0; i < 16; i++)
+                    q.addLast(items[round + i]);
+                for(int i = 0; i < 16; i++)
+                    sum += q.pollFirst();
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,72 @@
+package spatial;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * JMH benchmark comparing the KD tree builders over the same uniform points, the builder is a @Param:
+ *
+ *      pointer        -- PointerKD_Tree, three presorted arrays, temp array per node
+ *      kdtree         -- new KD_Tree().build(), introselect, new arrays every build
+ *      kdtree-reused  -- KD_Tree.build() again, introselect, arrays reused from the last build
+ *
+ * Every build returns its tree so JMH keeps the work. Bytes allocated per build are the gc.alloc.rate.norm (B/op) of
+ * the GC profiler:
+ *
+ *      java -jar target/benchmarks.jar BuildBenchmark -prof gc -p count=10000,100000
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuildBenchmark
+{
+    @State(Scope.Thread)
+    public static class Input
+    {
+        @Param({"pointer", "kdtree", "kdtree-reused"})
+        public String builder;
+
+        @Param({"1000", "10000", "100000", "1000000"})
+        public int count;
+
+        double[] x, y, z;
+
+        //the tree kdtree-reused builds again and again
+        final KD_Tree reused = new KD_Tree();
+
+        @Setup(Level.Trial)
+        public void setUp()
+        {
+            //same points for every builder
+            Random random = new Random(42 + count);
+            x = new double[count];
+            y = new double[count];
+            z = new double[count];
+            for(int i = 0; i < count; i++)
+                Points.make("uniform", random, x, y, z, i);
+            reused.build(x, y, z, count);
+        }
+    }
+
+    @Benchmark
+    public Object build(Input s)
+    {
+        if(s.builder.equals("pointer"))
+            return new PointerKD_Tree(s.x, s.y, s.z, s.count);
+        if(s.builder.equals("kdtree"))
+        {
+            KD_Tree tree = new KD_Tree();
+            tree.build(s.x, s.y, s.z, s.count);
+            return tree;
+        }
+        if(s.builder.equals("kdtree-reused"))
+        {
+            s.reused.build(s.x, s.y, s.z, s.count);
+            return s.reused;
+        }
+        throw new IllegalArgumentException("unknown builder " + s.builder);
+    }
+}
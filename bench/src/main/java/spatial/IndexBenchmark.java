@@ -0,0 +1,135 @@
+package spatial;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * JMH benchmark of the spatial index engines the way the game uses them. One op is one tick: every point moves a
+ * little (bouncing off the walls of the box), the index is brought up to date and then a batch of QUERIES small radius
+ * queries is run around the points.
+ *
+ * Parameters (narrow any of them down with -p name=v1,v2):
+ *
+ *      engine        -- kdtree, grid
+ *      mode          -- rebuilt (build() every tick, what the game did before the index was kept between ticks),
+ *                       updated (update() every tick, build() only when needsRebuild())
+ *      count         -- 1000, 10000, 100000
+ *      distribution  -- uniform, clustered, planar
+ *
+ * Moving the points costs the same for every engine, so the differences between rows are the index. A tick returns
+ * how many hits its queries found so JMH keeps the work.
+ *
+ *      java -jar target/benchmarks.jar IndexBenchmark -p count=10000 -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndexBenchmark
+{
+    /**QUERIES PER TICK**/
+    static final int QUERIES = 2000;
+
+    /**SAME HIT DISTANCE AS THE GAME**/
+    static final double SQUARE_RADIUS = 200;
+    //how far a point moves in a tick, a target at full speed moves about this far in 16ms
+    static final double STEP = 0.6;
+
+    /**THE MOVING POINTS, THEIR INDEX AND QUERY POINTS NEAR THEM**/
+    @State(Scope.Thread)
+    public static class World
+    {
+        @Param({"kdtree", "grid"})
+        public String engine;
+
+        @Param({"rebuilt", "updated"})
+        public String mode;
+
+        @Param({"1000", "10000", "100000"})
+        public int count;
+
+        @Param({"uniform", "clustered", "planar"})
+        public String distribution;
+
+        double[] x, y, z, vx, vy, vz;
+        final double[] qx = new double[QUERIES], qy = new double[QUERIES], qz = new double[QUERIES];
+
+        SpatialIndex3D index;
+        SpatialIndex3D.Query query;
+        boolean rebuildEveryTick;
+
+        final SpatialBenchmark.Counter counter = new SpatialBenchmark.Counter();
+
+        @Setup(Level.Trial)
+        public void setUp()
+        {
+            if(!mode.equals("rebuilt") && !mode.equals("updated"))
+                throw new IllegalArgumentException("unknown mode " + mode);
+            rebuildEveryTick = mode.equals("rebuilt");
+
+            //same points and queries for every engine
+            Random random = new Random(count*31L + distribution.hashCode());
+            x = new double[count];
+            y = new double[count];
+            z = new double[count];
+            vx = new double[count];
+            vy = new double[count];
+            vz = new double[count];
+            for(int i = 0; i < count; i++)
+            {
+                Points.make(distribution, random, x, y, z, i);
+                vx[i] = (random.nextDouble()*2 - 1)*STEP;
+                vy[i] = (random.nextDouble()*2 - 1)*STEP;
+                vz[i] = distribution.equals("planar") ? 0 : (random.nextDouble()*2 - 1)*STEP;
+            }
+            for(int q = 0; q < QUERIES; q++)
+            {
+                //queries where the points are, like bombs flying at targets
+                int i = random.nextInt(count);
+                qx[q] = x[i] + random.nextGaussian()*10;
+                qy[q] = y[i] + random.nextGaussian()*10;
+                qz[q] = z[i] + random.nextGaussian()*10;
+            }
+
+            index = SpatialBenchmark.newIndex(engine);
+            index.build(x, y, z, count);
+            query = index.newQuery();
+        }
+    }
+
+    @Benchmark
+    public long tick(World s)
+    {
+        //move every point, bouncing off the walls of the box
+        double[] x = s.x, y = s.y, z = s.z, vx = s.vx, vy = s.vy, vz = s.vz;
+        for(int i = 0; i < s.count; i++)
+        {
+            x[i] += vx[i];
+            y[i] += vy[i];
+            z[i] += vz[i];
+            if(x[i] < -Points.HALF_WIDTH || x[i] > Points.HALF_WIDTH) vx[i] = -vx[i];
+            if(y[i] < -Points.HALF_HEIGHT || y[i] > Points.HALF_HEIGHT) vy[i] = -vy[i];
+            if(z[i] < Points.FAR_Z || z[i] > Points.NEAR_Z) vz[i] = -vz[i];
+        }
+
+        //bring the index up to date
+        if(s.rebuildEveryTick)
+        {
+            s.index.build(x, y, z, s.count);
+        }
+        else
+        {
+            s.index.update(x, y, z);
+            if(s.index.needsRebuild())
+                s.index.build(x, y, z, s.count);
+        }
+
+        //then query it
+        long hits = 0;
+        for(int q = 0; q < QUERIES; q++)
+            hits += s.query.neighbors(s.qx[q], s.qy[q], s.qz[q], SQUARE_RADIUS, s.counter);
+        return hits;
+    }
+}
@@ -0,0 +1,197 @@
+package spatial;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Check and JMH benchmark of the KD_Tree node layouts (heap, blocked, van Emde Boas) against each other.
+ *
+ * main() builds every layout over the same points, and every one has to give exactly the same answers as heap order to
+ * neighbors(), sweep() and kNearest() for every query point. It exits with status 1 if anything differs.
+ *
+ * The benchmarks time one query:
+ *
+ *      layout        -- heap, blocked, veb
+ *      count         -- 100000, 1000000
+ *      distribution  -- uniform, clustered
+ *      benchmark     -- neighbors, sweep (r2 = 200, the game's hit distance), kNearest (k = 8)
+ *
+ * The queries go round QUERY_POINTS random places, far more than fit in the cache with the paths down to them, so
+ * every query walks down from the top like a bomb does in the game. Java can not read the CPU's cache miss counters,
+ * JMH's perf profiler can (Linux only):
+ *
+ *      java -jar target/benchmarks.jar LayoutBenchmark -p count=1000000 -prof perfnorm
+ *
+ * Run with: java -cp target/benchmarks.jar spatial.LayoutBenchmark (the check)
+ *           java -jar target/benchmarks.jar LayoutBenchmark [-p layout=heap,veb] [-prof gc]
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LayoutBenchmark
+{
+    /**SETTINGS**/
+    static final int QUERY_POINTS = 1 << 16;
+    static final int CHECK_POINTS = 20000;
+    static final int CHECK_QUERIES = 2000;
+    static final double SQUARE_RADIUS = 200;
+    static final int K = 8;
+
+    static final String[] LAYOUTS = {"heap", "blocked", "veb"};
+
+    @Param({"heap", "blocked", "veb"})
+    public String layout;
+
+    @Param({"100000", "1000000"})
+    public int count;
+
+    @Param({"uniform", "clustered"})
+    public String distribution;
+
+    KD_Tree.TreeQuery query;
+    double[][] q;
+    int i;
+
+    final SpatialBenchmark.Counter counter = new SpatialBenchmark.Counter();
+    final SweepHits hits = new SweepHits();
+    final KD_Tree.Nearest nearest = new KD_Tree.Nearest();
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        Random random = new Random(count*31L + distribution.hashCode());
+        double[] x = new double[count], y = new double[count], z = new double[count];
+        for(int p = 0; p < count; p++)
+            Points.make(distribution, random, x, y, z, p);
+        q = queries(random, x, y, z, count, QUERY_POINTS);
+
+        KD_Tree tree = new KD_Tree();
+        tree.setLayout(layout(layout));
+        tree.build(x, y, z, count);
+        query = tree.newQuery();
+    }
+
+    @Benchmark
+    public int neighbors()
+    {
+        i = (i + 1) & (QUERY_POINTS - 1);
+        return query.neighbors(q[0][i], q[1][i], q[2][i], SQUARE_RADIUS, counter);
+    }
+
+    @Benchmark
+    public int sweep()
+    {
+        i = (i + 1) & (QUERY_POINTS - 1);
+        return query.sweep(q[0][i], q[1][i], q[2][i], q[3][i], q[4][i], q[5][i], SQUARE_RADIUS, hits);
+    }
+
+    @Benchmark
+    public int kNearest()
+    {
+        i = (i + 1) & (QUERY_POINTS - 1);
+        return query.kNearest(q[0][i], q[1][i], q[2][i], K, nearest);
+    }
+
+    public static void main(String[] args)
+    {
+        int failures = 0;
+        for(String distribution : new String[]{"uniform", "clustered", "planar"})
+            failures += check(distribution);
+        System.out.println(failures == 0 ? "every layout gave the same answers" : failures + " queries differed between layouts");
+        if(failures != 0)
+            System.exit(1);
+    }
+
+    /**FUNCTION TO BUILD EVERY LAYOUT OVER THE SAME POINTS AND COUNT THE QUERIES THAT DO NOT MATCH HEAP ORDER**/
+    static int check(String distribution)
+    {
+        int n = CHECK_POINTS;
+        Random random = new Random(distribution.hashCode());
+        double[] x = new double[n], y = new double[n], z = new double[n];
+        for(int i = 0; i < n; i++)
+            Points.make(distribution, random, x, y, z, i);
+        double[][] q = queries(random, x, y, z, n, CHECK_QUERIES);
+
+        KD_Tree[] trees = new KD_Tree[LAYOUTS.length];
+        for(int t = 0; t < trees.length; t++)
+        {
+            trees[t] = new KD_Tree();
+            trees[t].setLayout(layout(LAYOUTS[t]));
+            trees[t].build(x, y, z, n);
+            //some removed, so dead nodes and empty boxes are in there too
+            for(int i = 0; i < n; i += 7)
+                trees[t].remove(i);
+            trees[t].update(x, y, z);
+        }
+
+        int failures = 0;
+        for(int i = 0; i < CHECK_QUERIES; i++)
+        {
+            String expected = answers(trees[0], q, i);
+            for(int t = 1; t < trees.length; t++)
+            {
+                if(!answers(trees[t], q, i).equals(expected))
+                    failures++;
+            }
+        }
+        return failures;
+    }
+
+    /**FUNCTION TO RUN EVERY KIND OF QUERY AT QUERY POINT i AND WRITE THE ANSWERS DOWN**/
+    static String answers(KD_Tree tree, double[][] q, int i)
+    {
+        final ArrayList<Integer> found = new ArrayList<Integer>();
+        tree.neighbors(q[0][i], q[1][i], q[2][i], SQUARE_RADIUS, new IdVisitor() {
+            public void visit(int id) {
+                found.add(id);
+            }
+        });
+        //neighbors come in the order the tree is walked in, which is the same in every layout, but do not count on it
+        Collections.sort(found);
+
+        SweepHits hits = new SweepHits();
+        tree.sweep(q[0][i], q[1][i], q[2][i], q[3][i], q[4][i], q[5][i], SQUARE_RADIUS, hits);
+        KD_Tree.Nearest nearest = new KD_Tree.Nearest();
+        tree.kNearest(q[0][i], q[1][i], q[2][i], K, nearest);
+
+        StringBuilder answer = new StringBuilder(found.toString());
+        for(int h = 0; h < hits.size; h++)
+            answer.append(' ').append(hits.ids[h]).append('@').append(hits.times[h]);
+        for(int k = 0; k < nearest.size; k++)
+            answer.append(' ').append(nearest.ids[k]);
+        return answer.toString();
+    }
+
+    /**FUNCTION TO MAKE count QUERY POINTS NEAR THE POINTS, AND WHERE A SWEEP FROM EACH ONE ENDS**/
+    static double[][] queries(Random random, double[] x, double[] y, double[] z, int n, int count)
+    {
+        double[][] q = new double[6][count];
+        for(int i = 0; i < count; i++)
+        {
+            int p = random.nextInt(n);
+            q[0][i] = x[p] + random.nextGaussian()*10;
+            q[1][i] = y[p] + random.nextGaussian()*10;
+            q[2][i] = z[p] + random.nextGaussian()*10;
+            q[3][i] = q[0][i] + random.nextGaussian()*10;
+            q[4][i] = q[1][i] + random.nextGaussian()*10;
+            q[5][i] = q[2][i] + random.nextGaussian()*10;
+        }
+        return q;
+    }
+
+    /**FUNCTION TO TURN A LAYOUT NAME INTO ITS KD_Tree CONSTANT**/
+    static int layout(String name)
+    {
+        if(name.equals("heap"))
+            return KD_Tree.LAYOUT_HEAP;
+        if(name.equals("blocked"))
+            return KD_Tree.LAYOUT_BLOCKED;
+        if(name.equals("veb"))
+            return KD_Tree.LAYOUT_VEB;
+        throw new IllegalArgumentException("unknown layout " + name);
+    }
+}
@@ -0,0 +1,211 @@
+package spatial;
+
+import java.util.*;
+
+/**
+ * Randomized check of the spatial index range searches against brute force.
+ *
+ * For every distribution and point count it builds:
+ *
+ *      1. PointerKD_Tree
+ *      2. KD_Tree, fresh
+ *      3. KD_Tree, updated for a few ticks while points drift and some are removed
+ *      4. SpatialHashGrid, fresh and updated the same way
+ *
+ * and compares neighbors() on random points and radii with looking at every point. It prints how many queries
+ * disagreed, the average number of hits and the average number of nodes each index looked at, so how well the
+ * pruning works can be compared between changes (for the grid, the number of ids it looked at). Exits with status 1
+ * if anything disagreed.
+ *
+ * Run with: java spatial.NeighborsOracle [seed]
+ */
+public class NeighborsOracle
+{
+    /**SETTINGS**/
+    static final int[] COUNTS = {0, 1, 2, 3, 10, 100, 1000, 20000};
+    static final String[] DISTRIBUTIONS = {"uniform", "clustered", "planar", "duplicates"};
+    static final int QUERIES = 300;
+    static final int UPDATE_TICKS = 5;
+    static final double WORLD = 1000;
+
+    static Random random;
+
+    public static void main(String[] args)
+    {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        random = new Random(seed);
+
+        int failures = 0;
+        System.out.printf("%-11s %7s %9s %9s %12s %12s %12s %12s %12s%n", "dist", "points", "failures", "hits/q", "Pointer", "KD_Tree", "KD updated", "Grid", "Grid updated");
+        for(String distribution : DISTRIBUTIONS)
+        {
+            for(int n : COUNTS)
+            {
+                failures += check(distribution, n);
+            }
+        }
+
+        System.out.println(failures == 0 ? "all queries matched brute force" : failures + " queries did not match brute force");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**FUNCTION TO RUN EVERY QUERY FOR ONE DISTRIBUTION AND POINT COUNT, RETURNS HOW MANY DISAGREED**/
+    static int check(String distribution, int n)
+    {
+        double[] x = new double[n], y = new double[n], z = new double[n];
+        boolean[] removed = new boolean[n];
+        for(int i = 0; i < n; i++)
+        {
+            makePoint(distribution, x, y, z, i);
+        }
+
+        PointerKD_Tree pointer = new PointerKD_Tree(x, y, z, n);
+        KD_Tree fresh = new KD_Tree();
+        fresh.build(x, y, z, n);
+        KD_Tree updated = new KD_Tree();
+        updated.build(x.clone(), y.clone(), z.clone(), n);
+        SpatialIndex3D.Query query = fresh.newQuery();
+        SpatialHashGrid grid = new SpatialHashGrid(50);
+        grid.build(x, y, z, n);
+
+        int failures = 0;
+        long hits = 0, pointerVisited = 0, freshVisited = 0, updatedVisited = 0, gridVisited = 0, gridUpdatedVisited = 0;
+        Collector found = new Collector();
+
+        //fresh trees
+        for(int q = 0; q < QUERIES; q++)
+        {
+            double px = random.nextDouble()*WORLD, py = random.nextDouble()*WORLD, pz = random.nextDouble()*WORLD;
+            double squareRadius = randomSquareRadius();
+            HashSet<Integer> expected = bruteForce(x, y, z, removed, px, py, pz, squareRadius);
+            hits += expected.size();
+
+            pointer.neighbors(px, py, pz, squareRadius, found.clear());
+            if(!expected.equals(found.ids))
+                failures++;
+            pointerVisited += pointer.visited;
+
+            query.neighbors(px, py, pz, squareRadius, found.clear());
+            if(!expected.equals(found.ids))
+                failures++;
+            freshVisited += query.visited();
+
+            grid.neighbors(px, py, pz, squareRadius, found.clear());
+            if(!expected.equals(found.ids))
+                failures++;
+            gridVisited += grid.visited();
+        }
+
+        //drift and remove points, then update
+        for(int tick = 0; tick < UPDATE_TICKS; tick++)
+        {
+            for(int i = 0; i < n; i++)
+            {
+                x[i] += random.nextGaussian()*5;
+                y[i] += random.nextGaussian()*5;
+                z[i] += random.nextGaussian()*5;
+                if(!removed[i] && random.nextInt(100) == 0)
+                {
+                    removed[i] = true;
+                    updated.remove(i);
+                    grid.remove(i);
+                }
+            }
+            updated.update(x, y, z);
+            grid.update(x, y, z);
+        }
+        for(int q = 0; q < QUERIES; q++)
+        {
+            double px = random.nextDouble()*WORLD, py = random.nextDouble()*WORLD, pz = random.nextDouble()*WORLD;
+            double squareRadius = randomSquareRadius();
+            HashSet<Integer> expected = bruteForce(x, y, z, removed, px, py, pz, squareRadius);
+
+            updated.neighbors(px, py, pz, squareRadius, found.clear());
+            if(!expected.equals(found.ids))
+                failures++;
+            updatedVisited += updated.visited();
+
+            grid.neighbors(px, py, pz, squareRadius, found.clear());
+            if(!expected.equals(found.ids))
+                failures++;
+            gridUpdatedVisited += grid.visited();
+        }
+
+        System.out.printf("%-11s %7d %9d %9.1f %12.1f %12.1f %12.1f %12.1f %12.1f%n", distribution, n, failures,
+                          (double)hits/QUERIES, (double)pointerVisited/QUERIES, (double)freshVisited/QUERIES, (double)updatedVisited/QUERIES,
+                          (double)gridVisited/QUERIES, (double)gridUpdatedVisited/QUERIES);
+        return failures;
+    }
+
+    /**VISITOR THAT COLLECTS THE IDS IT IS HANDED**/
+    static class Collector implements IdVisitor
+    {
+        HashSet<Integer> ids = new HashSet<Integer>();
+
+        Collector clear()
+        {
+            ids.clear();
+            return this;
+        }
+
+        public void visit(int id)
+        {
+            ids.add(id);
+        }
+    }
+
+    /**FUNCTION TO RETURN EVERY POINT IN RADIUS THAT HAS NOT BEEN REMOVED BY LOOKING AT ALL OF THEM**/
+    static HashSet<Integer> bruteForce(double[] x, double[] y, double[] z, boolean[] removed, double px, double py, double pz, double squareRadius)
+    {
+        HashSet<Integer> found = new HashSet<Integer>();
+        for(int i = 0; i < x.length; i++)
+        {
+            if(removed[i])
+                continue;
+            double dx = px - x[i], dy = py - y[i], dz = pz - z[i];
+            if(dx*dx + dy*dy + dz*dz < squareRadius)
+                found.add(i);
+        }
+        return found;
+    }
+
+    /**FUNCTION TO PICK A RADIUS FROM "ALMOST NOTHING" TO "A GOOD PART OF THE WORLD"**/
+    static double randomSquareRadius()
+    {
+        double r = Math.pow(10, random.nextDouble()*3);
+        return r*r;
+    }
+
+    /**FUNCTION TO PUT POINT i FROM A DISTRIBUTION INTO x, y AND z**/
+    static void makePoint(String distribution, double[] x, double[] y, double[] z, int i)
+    {
+        if(distribution.equals("clustered"))
+        {
+            //a few tight blobs
+            int blob = random.nextInt(5);
+            x[i] = 100 + blob*200 + random.nextGaussian()*20;
+            y[i] = 500 + random.nextGaussian()*20;
+            z[i] = 900 - blob*200 + random.nextGaussian()*20;
+        }
+        else if(distribution.equals("planar"))
+        {
+            //all on one plane
+            x[i] = random.nextDouble()*WORLD;
+            y[i] = random.nextDouble()*WORLD;
+            z[i] = WORLD/2;
+        }
+        else if(distribution.equals("duplicates"))
+        {
+            //a coarse grid so a lot of coordinates are equal
+            x[i] = random.nextInt(5)*WORLD/4;
+            y[i] = random.nextInt(5)*WORLD/4;
+            z[i] = random.nextInt(5)*WORLD/4;
+        }
+        else
+        {
+            x[i] = random.nextDouble()*WORLD;
+            y[i] = random.nextDouble()*WORLD;
+            z[i] = random.nextDouble()*WORLD;
+        }
+    }
+}
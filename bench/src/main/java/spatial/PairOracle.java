@@ -0,0 +1,172 @@
+package spatial;
+
+import java.util.*;
+
+/**
+ * Randomized check of SweepAndPrune against brute force.
+ *
+ * Boxes in two groups are added, moved a little every tick (with the odd big jump), removed and added again in
+ * batches of every size, so both the insertion sort path and the full rebuild path of commit() get used. After every
+ * commit the pair set and what the PairListener was told are compared with checking every pair of boxes. It prints how
+ * many ticks disagreed, how many pairs there were and how many endpoint swaps a commit did on average. Exits with
+ * status 1 if anything disagreed.
+ *
+ * Run with: java spatial.PairOracle [seed]
+ */
+public class PairOracle
+{
+    /**SETTINGS**/
+    static final int[] COUNTS = {1, 10, 100, 1000, 3000};
+    static final int TICKS = 60;
+    static final double WORLD = 500;
+
+    static Random random;
+
+    public static void main(String[] args)
+    {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        random = new Random(seed);
+
+        int failures = 0;
+        System.out.printf("%7s %9s %9s %12s %10s%n", "boxes", "failures", "pairs", "swaps/tick", "rebuilds");
+        for(int n : COUNTS)
+        {
+            failures += check(n);
+        }
+
+        System.out.println(failures == 0 ? "all ticks matched brute force" : failures + " ticks did not match brute force");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**FUNCTION TO RUN EVERY TICK FOR ONE STARTING BOX COUNT, RETURNS HOW MANY TICKS DISAGREED**/
+    static int check(int n)
+    {
+        SweepAndPrune sweepAndPrune = new SweepAndPrune();
+        ArrayList<Integer> live = new ArrayList<Integer>();
+        HashMap<Integer, double[]> boxes = new HashMap<Integer, double[]>();
+        HashMap<Integer, Integer> groups = new HashMap<Integer, Integer>();
+        final HashSet<Long> told = new HashSet<Long>();
+        final int[] listenerErrors = new int[1];
+
+        //keep what the listener was told, it should always match the pair set
+        SweepAndPrune.PairListener listener = new SweepAndPrune.PairListener() {
+            public void pairAdded(int h1, int h2) {
+                if(!told.add(key(h1, h2)))
+                    listenerErrors[0]++;
+            }
+            public void pairRemoved(int h1, int h2) {
+                if(!told.remove(key(h1, h2)))
+                    listenerErrors[0]++;
+            }
+        };
+
+        int failures = 0;
+        long pairs = 0, swaps = 0;
+        int rebuilds = 0;
+        for(int tick = 0; tick < TICKS; tick++)
+        {
+            //add a batch, sometimes a big one
+            int adds = tick == 0 ? n : random.nextInt(tick % 10 == 0 ? Math.max(n/4, 1) : 4);
+            for(int i = 0; i < adds; i++)
+            {
+                double[] box = randomBox();
+                int group = random.nextInt(2);
+                int h = sweepAndPrune.add(group, box[0], box[1], box[2], box[3], box[4], box[5]);
+                boxes.put(h, box);
+                groups.put(h, group);
+                live.add(h);
+            }
+
+            //remove a few
+            int removes = random.nextInt(Math.max(live.size()/20, 1) + 1);
+            for(int i = 0; i < removes && !live.isEmpty(); i++)
+            {
+                int h = live.remove(random.nextInt(live.size()));
+                sweepAndPrune.remove(h);
+                boxes.remove(h);
+            }
+
+            //move the rest
+            for(int h : live)
+            {
+                double[] box = boxes.get(h);
+                if(random.nextInt(50) == 0)
+                {
+                    box = randomBox();
+                    boxes.put(h, box);
+                }
+                else
+                {
+                    for(int a = 0; a < 3; a++)
+                    {
+                        double d = random.nextGaussian()*2;
+                        box[a] += d;
+                        box[a + 3] += d;
+                    }
+                }
+                sweepAndPrune.update(h, box[0], box[1], box[2], box[3], box[4], box[5]);
+            }
+
+            sweepAndPrune.commit(listener);
+            swaps += sweepAndPrune.swaps();
+            if(sweepAndPrune.fullRebuild)
+                rebuilds++;
+
+            //every pair of boxes in different groups
+            HashSet<Long> expected = new HashSet<Long>();
+            for(int i = 0; i < live.size(); i++)
+            {
+                for(int j = i + 1; j < live.size(); j++)
+                {
+                    int h1 = live.get(i), h2 = live.get(j);
+                    if(!groups.get(h1).equals(groups.get(h2)) && overlap(boxes.get(h1), boxes.get(h2)))
+                        expected.add(key(h1, h2));
+                }
+            }
+            pairs += expected.size();
+
+            final HashSet<Long> found = new HashSet<Long>();
+            sweepAndPrune.pairs(new SweepAndPrune.PairVisitor() {
+                public void visit(int h1, int h2) {
+                    found.add(key(h1, h2));
+                }
+            });
+            if(!expected.equals(found) || !expected.equals(told) || sweepAndPrune.pairCount() != expected.size())
+                failures++;
+        }
+        failures += listenerErrors[0];
+
+        System.out.printf("%7d %9d %9.1f %12.1f %10d%n", n, failures, (double)pairs/TICKS, (double)swaps/TICKS, rebuilds);
+        return failures;
+    }
+
+    /**FUNCTION TO PACK A PAIR INTO ONE KEY**/
+    static long key(int h1, int h2)
+    {
+        return (long)Math.min(h1, h2) << 32 | Math.max(h1, h2);
+    }
+
+    /**FUNCTION TO SAY WHETHER TWO BOXES OVERLAP (TOUCHING COUNTS)**/
+    static boolean overlap(double[] p, double[] q)
+    {
+        for(int a = 0; a < 3; a++)
+        {
+            if(p[a] > q[a + 3] || q[a] > p[a + 3])
+                return false;
+        }
+        return true;
+    }
+
+    /**FUNCTION TO MAKE A RANDOM BOX, SOME FLAT AND ON A COARSE GRID SO ENDPOINTS TIE**/
+    static double[] randomBox()
+    {
+        double x = random.nextDouble()*WORLD, y = random.nextDouble()*WORLD, z = random.nextDouble()*WORLD;
+        double w = random.nextDouble()*40, h = random.nextDouble()*40, d = random.nextDouble()*40;
+        if(random.nextInt(5) == 0)
+        {
+            x = Math.round(x/50)*50;
+            w = 0;
+        }
+        return new double[]{x, y, z, x + w, y + h, z + d};
+    }
+}
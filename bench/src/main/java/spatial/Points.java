@@ -0,0 +1,46 @@
+package spatial;
+
+import java.util.*;
+
+/**
+ * Point sets for the benchmarks, spread through the same box the game keeps its targets in:
+ *
+ *      1. uniform   -- anywhere in the box
+ *      2. clustered -- a few tight blobs
+ *      3. planar    -- all on one plane across the box
+ */
+public class Points
+{
+    /**SAME BOX AS THE GAME**/
+    static final double HALF_WIDTH = 480, HALF_HEIGHT = 280, NEAR_Z = -5000, FAR_Z = -5500;
+
+    static final String[] DISTRIBUTIONS = {"uniform", "clustered", "planar"};
+
+    /**FUNCTION TO PUT POINT i FROM A DISTRIBUTION INTO x, y AND z**/
+    static void make(String distribution, Random random, double[] x, double[] y, double[] z, int i)
+    {
+        if(distribution.equals("clustered"))
+        {
+            int blob = random.nextInt(5);
+            x[i] = -400 + blob*200 + random.nextGaussian()*20;
+            y[i] = random.nextGaussian()*20;
+            z[i] = -5250 + random.nextGaussian()*20;
+        }
+        else if(distribution.equals("planar"))
+        {
+            x[i] = (random.nextDouble()*2 - 1)*HALF_WIDTH;
+            y[i] = (random.nextDouble()*2 - 1)*HALF_HEIGHT;
+            z[i] = (NEAR_Z + FAR_Z)/2;
+        }
+        else if(distribution.equals("uniform"))
+        {
+            x[i] = (random.nextDouble()*2 - 1)*HALF_WIDTH;
+            y[i] = (random.nextDouble()*2 - 1)*HALF_HEIGHT;
+            z[i] = random.nextDouble()*(NEAR_Z - FAR_Z) + FAR_Z;
+        }
+        else
+        {
+            throw new IllegalArgumentException("unknown distribution " + distribution);
+        }
+    }
+}
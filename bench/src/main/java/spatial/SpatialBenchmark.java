@@ -0,0 +1,147 @@
+package spatial;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * JMH suite every change to a spatial index engine should be judged against.
+ *
+ * Benchmarks:
+ *
+ *      1. build      -- build the index from scratch over all the points, arrays reused from the last build
+ *      2. neighbors  -- one neighbors() query around a point near the points, hits handed to a counting visitor
+ *      3. sweep      -- one sweep() of a bomb sized sphere along a short path near the points
+ *
+ * Parameters (narrow any of them down with -p name=v1,v2):
+ *
+ *      engine        -- kdtree, grid
+ *      count         -- 100, 1000, 10000, 100000, 1000000
+ *      distribution  -- uniform, clustered, planar
+ *      squareRadius  -- 50, 200 (the game's hit distance), 5000, for neighbors and sweep only
+ *
+ * Every benchmark returns its result so JMH keeps the work. Bytes allocated per op come from the GC profiler, and a
+ * run is saved to compare the next one against with -rf csv:
+ *
+ *      java -jar target/benchmarks.jar SpatialBenchmark -prof gc -p count=1000,10000 -rf csv -rff now.csv
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpatialBenchmark
+{
+    /**HOW MANY DIFFERENT QUERY POINTS TO CYCLE THROUGH**/
+    static final int QUERY_POINTS = 4096;
+
+    /**THE INDEX OVER ONE SET OF POINTS, AND QUERY POINTS NEAR THEM**/
+    @State(Scope.Thread)
+    public static class Index
+    {
+        @Param({"kdtree", "grid"})
+        public String engine;
+
+        @Param({"100", "1000", "10000", "100000", "1000000"})
+        public int count;
+
+        @Param({"uniform", "clustered", "planar"})
+        public String distribution;
+
+        double[] x, y, z;
+        SpatialIndex3D index;
+        SpatialIndex3D.Query query;
+
+        //query points near the points, like bombs flying at targets, and where each one sweeps to
+        final double[] qx = new double[QUERY_POINTS], qy = new double[QUERY_POINTS], qz = new double[QUERY_POINTS];
+        final double[] dx = new double[QUERY_POINTS], dy = new double[QUERY_POINTS], dz = new double[QUERY_POINTS];
+        int q;
+
+        final Counter counter = new Counter();
+        final SweepHits hits = new SweepHits();
+
+        @Setup(Level.Trial)
+        public void setUp()
+        {
+            //same points for every engine
+            Random random = new Random(count*31L + distribution.hashCode());
+            x = new double[count];
+            y = new double[count];
+            z = new double[count];
+            for(int i = 0; i < count; i++)
+                Points.make(distribution, random, x, y, z, i);
+
+            for(int i = 0; i < QUERY_POINTS; i++)
+            {
+                int p = random.nextInt(count);
+                qx[i] = x[p] + random.nextGaussian()*10;
+                qy[i] = y[p] + random.nextGaussian()*10;
+                qz[i] = z[p] + random.nextGaussian()*10;
+                dx[i] = random.nextGaussian()*10;
+                dy[i] = random.nextGaussian()*10;
+                dz[i] = random.nextGaussian()*10;
+            }
+
+            index = newIndex(engine);
+            index.build(x, y, z, count);
+            query = index.newQuery();
+        }
+
+        /**FUNCTION TO MOVE ON TO THE NEXT QUERY POINT**/
+        int next()
+        {
+            q = (q + 1) & (QUERY_POINTS - 1);
+            return q;
+        }
+    }
+
+    /**THE RADIUS OF THE QUERIES, ITS OWN STATE SO build() IS NOT RUN ONCE PER RADIUS**/
+    @State(Scope.Thread)
+    public static class Radius
+    {
+        @Param({"50", "200", "5000"})
+        public double squareRadius;
+    }
+
+    @Benchmark
+    public int build(Index s)
+    {
+        s.index.build(s.x, s.y, s.z, s.count);
+        return s.index.liveCount();
+    }
+
+    @Benchmark
+    public int neighbors(Index s, Radius r)
+    {
+        int q = s.next();
+        return s.query.neighbors(s.qx[q], s.qy[q], s.qz[q], r.squareRadius, s.counter);
+    }
+
+    @Benchmark
+    public int sweep(Index s, Radius r)
+    {
+        int q = s.next();
+        return s.query.sweep(s.qx[q], s.qy[q], s.qz[q], s.qx[q] + s.dx[q], s.qy[q] + s.dy[q], s.qz[q] + s.dz[q], r.squareRadius, s.hits);
+    }
+
+    /**FUNCTION TO MAKE AN EMPTY INDEX OF ONE ENGINE**/
+    static SpatialIndex3D newIndex(String engine)
+    {
+        if(engine.equals("kdtree"))
+            return new KD_Tree();
+        if(engine.equals("grid"))
+            return new SpatialHashGrid(2*Math.sqrt(200));
+        throw new IllegalArgumentException("unknown engine " + engine);
+    }
+
+    /**VISITOR THAT ONLY COUNTS**/
+    static class Counter implements IdVisitor
+    {
+        long count;
+
+        public void visit(int id)
+        {
+            count++;
+        }
+    }
+}
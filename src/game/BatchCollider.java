@@ -0,0 +1,243 @@
+package game;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import spatial.SpatialIndex3D;
+import spatial.SweepHits;
+
+/**
+ * Class that checks every bomb against the targets' spatial index in one go instead of one bomb at a time on the update thread.
+ *
+ * Every bomb is swept along the path it moved this tick (prevx.. to posx..) so fast bombs can not skip over a target
+ * between ticks. A bomb goes off at the first target it touches, and every target within hitSquareDistance of that
+ * point is hit.
+ *
+ * collide() does:
+ *
+ *      1. Sorts the bombs along a Morton (z-order) curve so bombs next to each other in the order are next to each
+ *         other in space, and walk mostly the same part of the index
+ *      2. Cuts the sorted bombs into chunks and sweeps the chunks in parallel on a ForkJoinPool, every chunk with
+ *         its own Query and its own buffer of hits
+ *      3. Goes through the chunks in order on the calling thread and only then marks the bombs and targets dead
+ *
+ * The chunks only read the index, the bombs and the targets, and all writes happen in step 3, so the answer does not
+ * depend on how the chunks were scheduled. Every array, chunk and buffer is kept for the next tick.
+ */
+public class BatchCollider
+{
+    /**Class Member Variables**/
+    //bombs per chunk, fewer than this and there is only one chunk that runs on the calling thread
+    public static final int CHUNK_SIZE = 256;
+
+    //bits per axis in the Morton code and bits left for the bomb index
+    private static final int MORTON_BITS = 14;
+    private static final int INDEX_BITS = 21;
+
+    ForkJoinPool pool;
+    double hitSquareDistance;
+
+    //inputs of the current collide() call, read by the chunks
+    private EntityStore bombs;
+    private EntityStore targets;
+    private int bombCount;
+    private TargetIndex targetIndex;
+    private SpatialIndex3D index;
+
+    //Morton code in the high bits and bomb index in the low bits, sorted
+    private long[] order = new long[0];
+
+    //chunks from the last call, reused
+    private Chunk[] chunks = new Chunk[0];
+    private Root root = new Root();
+
+    /**CONSTRUCTOR**/
+    public BatchCollider(ForkJoinPool pool, double hitSquareDistance){
+        this.pool = pool;
+        this.hitSquareDistance = hitSquareDistance;
+    }
+
+    /**FUNCTION TO KILL EVERY BOMB THAT RAN INTO A TARGET THIS TICK AND EVERY TARGET IT HIT**/
+    /**Returns how many bomb-target hits there were.**/
+    public int collide(EntityStore bombs, TargetIndex targetIndex){
+        this.bombs = bombs;
+        this.targets = targetIndex.targets();
+        this.targetIndex = targetIndex;
+        this.index = targetIndex.index();
+        bombCount = bombs.count;
+        if(bombCount == 0){
+            return 0;
+        }
+        if(bombCount > 1 << INDEX_BITS){
+            throw new IllegalArgumentException("too many bombs: " + bombCount);
+        }
+
+        //sort the bombs along the curve
+        if(order.length < bombCount){
+            order = new long[bombCount];
+        }
+        sortSpatially();
+
+        //cut into chunks and run them
+        int chunkCount = (bombCount + CHUNK_SIZE - 1)/CHUNK_SIZE;
+        if(chunks.length < chunkCount){
+            Chunk[] bigger = Arrays.copyOf(chunks, chunkCount);
+            for(int i = chunks.length; i < chunkCount; i++){
+                bigger[i] = new Chunk();
+            }
+            chunks = bigger;
+        }
+        for(int i = 0; i < chunkCount; i++){
+            chunks[i].reset(i*CHUNK_SIZE, Math.min((i + 1)*CHUNK_SIZE, bombCount));
+        }
+        if(chunkCount == 1 || pool == null){
+            for(int i = 0; i < chunkCount; i++){
+                chunks[i].compute();
+            }
+        }
+        else{
+            root.reinitialize();
+            root.chunkCount = chunkCount;
+            pool.invoke(root);
+        }
+
+        //merge in chunk order
+        int hits = 0;
+        for(int i = 0; i < chunkCount; i++){
+            Chunk c = chunks[i];
+            for(int h = 0; h < c.hitCount; h++){
+                bombs.dead[c.hitBombs[h]] = true;
+                targets.dead[c.hitTargets[h]] = true;
+            }
+            hits += c.hitCount;
+        }
+
+        //let go of this tick's bombs and targets
+        this.bombs = null;
+        this.targets = null;
+        this.targetIndex = null;
+        this.index = null;
+        return hits;
+    }
+
+    /**FUNCTION TO SORT THE BOMBS BY THEIR MORTON CODE INSIDE THE BOMBS' BOUNDING BOX**/
+    private void sortSpatially(){
+        double loX = Double.POSITIVE_INFINITY, loY = loX, loZ = loX;
+        double hiX = Double.NEGATIVE_INFINITY, hiY = hiX, hiZ = hiX;
+        double[] posx = bombs.posx, posy = bombs.posy, posz = bombs.posz;
+        for(int i = 0; i < bombCount; i++){
+            loX = Math.min(loX, posx[i]);
+            hiX = Math.max(hiX, posx[i]);
+            loY = Math.min(loY, posy[i]);
+            hiY = Math.max(hiY, posy[i]);
+            loZ = Math.min(loZ, posz[i]);
+            hiZ = Math.max(hiZ, posz[i]);
+        }
+
+        //scale each axis onto the grid of the curve
+        double cells = (1 << MORTON_BITS) - 1;
+        double sx = hiX > loX ? cells/(hiX - loX) : 0;
+        double sy = hiY > loY ? cells/(hiY - loY) : 0;
+        double sz = hiZ > loZ ? cells/(hiZ - loZ) : 0;
+        for(int i = 0; i < bombCount; i++){
+            long code = spread((int)((posx[i] - loX)*sx)) | spread((int)((posy[i] - loY)*sy)) << 1 | spread((int)((posz[i] - loZ)*sz)) << 2;
+            order[i] = code << INDEX_BITS | i;
+        }
+        Arrays.sort(order, 0, bombCount);
+    }
+
+    /**FUNCTION TO SPREAD THE LOW 14 BITS OF v SO THERE ARE TWO ZERO BITS BETWEEN EACH OF THEM**/
+    private static long spread(int v){
+        long x = v & 0x3fff;
+        x = (x | x << 16) & 0x0000ff0000ffL;
+        x = (x | x << 8) & 0x00f00f00f00fL;
+        x = (x | x << 4) & 0x0c30c30c30c3L;
+        x = (x | x << 2) & 0x249249249249L;
+        return x;
+    }
+
+    /**TASK THAT FORKS EVERY CHUNK AND WAITS FOR THEM**/
+    private class Root extends RecursiveAction{
+        private static final long serialVersionUID = 1L;
+        int chunkCount;
+
+        protected void compute(){
+            for(int i = 1; i < chunkCount; i++){
+                chunks[i].fork();
+            }
+            chunks[0].compute();
+            for(int i = 1; i < chunkCount; i++){
+                chunks[i].join();
+            }
+        }
+    }
+
+    /**TASK THAT SWEEPS ONE RUN OF THE SORTED BOMBS WITH ITS OWN STACK AND HIT BUFFERS**/
+    private class Chunk extends RecursiveAction{
+        private static final long serialVersionUID = 1L;
+        int start, end;
+
+        //hits found by this chunk, bomb and target indexes in their stores
+        int[] hitBombs = new int[16];
+        int[] hitTargets = new int[16];
+        int hitCount;
+
+        //targets touched by the bomb being swept and the query to walk the index with
+        private SweepHits sweepHits = new SweepHits();
+        private SpatialIndex3D.Query query;
+        private SpatialIndex3D queryIndex;
+
+        /**FUNCTION TO GET THE CHUNK READY FOR ANOTHER TICK**/
+        void reset(int start, int end){
+            reinitialize();
+            this.start = start;
+            this.end = end;
+            hitCount = 0;
+            if(queryIndex != index){
+                query = index.newQuery();
+                queryIndex = index;
+            }
+        }
+
+        protected void compute(){
+            long mask = (1L << INDEX_BITS) - 1;
+            EntityStore b = bombs, t = targets;
+            for(int i = start; i < end; i++){
+                int bomb = (int)(order[i] & mask);
+                double prevx = b.prevx[bomb], prevy = b.prevy[bomb], prevz = b.prevz[bomb];
+                double posx = b.posx[bomb], posy = b.posy[bomb], posz = b.posz[bomb];
+                int touched = query.sweep(prevx, prevy, prevz, posx, posy, posz, hitSquareDistance, sweepHits);
+                if(touched == 0){
+                    continue;
+                }
+
+                //the bomb goes off where it first touches a target
+                double time = sweepHits.times[0];
+                double x = prevx + time*(posx - prevx);
+                double y = prevy + time*(posy - prevy);
+                double z = prevz + time*(posz - prevz);
+
+                //the first target and every other one in reach of that point are hit
+                for(int h = 0; h < touched; h++){
+                    int target = targetIndex.slot(sweepHits.ids[h]);
+                    double dx = x - t.posx[target];
+                    double dy = y - t.posy[target];
+                    double dz = z - t.posz[target];
+                    if(h == 0 || dx*dx + dy*dy + dz*dz <= hitSquareDistance){
+                        add(bomb, target);
+                    }
+                }
+            }
+        }
+
+        /**FUNCTION TO KEEP A HIT, GROWING THE BUFFERS IF NEEDED**/
+        private void add(int b, int t){
+            if(hitCount == hitBombs.length){
+                hitBombs = Arrays.copyOf(hitBombs, hitCount*2);
+                hitTargets = Arrays.copyOf(hitTargets, hitCount*2);
+            }
+            hitBombs[hitCount] = b;
+            hitTargets[hitCount++] = t;
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package game;
+
+import java.util.*;
+
+/**
+ * Class that keeps every target (or every bomb) of the simulation in parallel arrays of primitives, one entry per
+ * entity, instead of one object per entity in an ArrayList.
+ *
+ * Entity i is posx[i], velx[i], size[i] and so on for i below count. Moving everything is then one loop over a few
+ * arrays that are read front to back, with no object headers, pointers or outer references in the way.
+ *
+ * Every tick the simulation calls, for all entities at once:
+ *
+ *      1. savePositions()  -- prevx.. = posx.., where the entity started the tick
+ *      2. integrate()      -- posx.. += velx..*time/scale
+ *      3. bounce()         -- reflects the velocity off the walls of the box and puts the entity back inside
+ *      4. shrink()         -- bombs only, shrinks them and marks them dead once they are gone
+ *
+ * move() does 1 to 3 a block at a time, so every array is read from memory once per tick and moving vectorizes
+ * (see moveAxis()). The separate methods are kept as the plain version it has to match exactly. useVectorKernel()
+ * switches move() to game.VectorMotion, the same thing written with the Vector API, when the JVM has
+ * jdk.incubator.vector (java --add-modules jdk.incubator.vector) and the class was compiled in.
+ *
+ * Colliders mark hit entities dead[i] and the simulation removes the dead ones at the end of the phase with
+ * removeDead(), one pass that slides the survivors down over the gaps and keeps them in order. That changes the index
+ * of every entity after the first dead one, so a broad phase that needs to know an entity from one tick to the next
+ * keeps its own id for it in tag[i], which moves along with the entity and is -1 for an entity just added. The
+ * RemovalListener is told the tag of every entity removeDead() takes out, so it can forget it right away.
+ *
+ * The arrays are also the pool the entities come from, nothing is allocated per entity:
+ *
+ *      acquire()     -- the next free slot, taken from the spare room past count (a pool hit) or after growing every
+ *                       array to twice the size (a pool miss)
+ *      add()         -- acquire() and then every field of the slot is reset to the new entity's values
+ *      removeDead()  -- releases the dead ones, compacting hands their slots back as spare room at the end
+ *
+ * So once the arrays are as big as the most entities there have been at once (or reserve() made them that big up
+ * front), shooting and respawning only reuse slots. poolHits and poolMisses count acquire()s of each kind.
+ */
+public class EntityStore
+{
+    /**Class Member Variables**/
+    int count;
+
+    //positions, velocities, and where every entity started the last tick
+    double[] posx, posy, posz, velx, vely, velz;
+    double[] prevx, prevy, prevz;
+    double[] size;
+    float[] color_r, color_g, color_b;
+    boolean[] dead;
+
+    //one int per entity for the broad phase to keep its own id or handle in, -1 until it hands one out
+    int[] tag;
+
+    //told about every entity removeDead() takes out, can be null
+    RemovalListener listener;
+
+    //how far inside a wall an entity is put back when it bounces, the same for every entity of a store
+    final double bounceDistance;
+
+    //slots acquire() took from the spare room and slots it had to grow the arrays for
+    long poolHits, poolMisses;
+
+    //entities move() goes through at a time, small enough for a block of every array it touches to stay in the cache
+    static final int MOVE_BLOCK = 1024;
+
+    //how move() moves one axis, the blocked loops here or game.VectorMotion
+    AxisMover mover = BLOCKED;
+
+    static final AxisMover BLOCKED = new AxisMover(){
+        public void moveAxis(double[] pos, double[] vel, double[] prev, int n, long time, double scale,
+                             double lo, double hi, double bounceDistance, boolean bounceFirst){
+            EntityStore.moveAxis(pos, vel, prev, n, time, scale, lo, hi, bounceDistance, bounceFirst);
+        }
+    };
+
+    //null when jdk.incubator.vector is not there
+    static final AxisMover VECTOR = loadVectorMotion();
+
+    /**CONSTRUCTOR**/
+    public EntityStore(int capacity, double bounceDistance){
+        this.bounceDistance = bounceDistance;
+        allocate(Math.max(capacity, 16));
+    }
+
+    /**FUNCTION TO ADD AN ENTITY AT THE END, RETURNS ITS INDEX**/
+    public int add(double posx, double posy, double posz, double velx, double vely, double velz, double size, float r, float g, float b){
+        int i = acquire();
+        this.posx[i] = posx;
+        this.posy[i] = posy;
+        this.posz[i] = posz;
+        this.velx[i] = velx;
+        this.vely[i] = vely;
+        this.velz[i] = velz;
+        this.prevx[i] = posx;
+        this.prevy[i] = posy;
+        this.prevz[i] = posz;
+        this.size[i] = size;
+        color_r[i] = r;
+        color_g[i] = g;
+        color_b[i] = b;
+        return i;
+    }
+
+    /**FUNCTION TO TAKE THE NEXT FREE SLOT FROM THE POOL, RETURNS ITS INDEX**/
+    /**Only dead and tag are reset here, the caller has to set everything else (add() does).**/
+    public int acquire(){
+        if(count == posx.length){
+            allocate(2*count);
+            poolMisses++;
+        }
+        else{
+            poolHits++;
+        }
+        int i = count++;
+        dead[i] = false;
+        tag[i] = -1;
+        return i;
+    }
+
+    /**FUNCTION TO MAKE ROOM FOR capacity ENTITIES UP FRONT, SO acquire() DOES NOT MISS UNTIL THERE ARE MORE**/
+    public void reserve(int capacity){
+        if(capacity > posx.length){
+            allocate(capacity);
+        }
+    }
+
+    /**FUNCTION TO RETURN HOW MANY ENTITIES FIT BEFORE THE ARRAYS HAVE TO GROW**/
+    public int capacity(){
+        return posx.length;
+    }
+
+    /**WHAT IS TOLD ABOUT EVERY ENTITY removeDead() TAKES OUT**/
+    public interface RemovalListener{
+        /**Entity index (counted before the pass) of store, with this tag, was removed**/
+        void removed(EntityStore store, int index, int tag);
+    }
+
+    /**FUNCTION TO REMOVE EVERY ENTITY MARKED DEAD AND RELEASE THEIR SLOTS, RETURNS HOW MANY THERE WERE**/
+    /**One pass: every run of survivors is slid down over the dead ones before it with one arraycopy per array, so it**/
+    /**is linear however many die, and the survivors stay in the order they were in.**/
+    public int removeDead(){
+        //nothing moves before the first dead one
+        int i = 0;
+        while(i < count && !dead[i]){
+            i++;
+        }
+        int kept = i;
+        while(i < count){
+            //the dead ones
+            while(i < count && dead[i]){
+                if(listener != null){
+                    listener.removed(this, i, tag[i]);
+                }
+                i++;
+            }
+
+            //and the run of survivors after them
+            int run = i;
+            while(i < count && !dead[i]){
+                i++;
+            }
+            copy(run, kept, i - run);
+            kept += i - run;
+        }
+        int removed = count - kept;
+        count = kept;
+        return removed;
+    }
+
+    /**FUNCTION TO MOVE length ENTITIES FROM from TO to, EVERY ARRAY**/
+    private void copy(int from, int to, int length){
+        if(length == 0 || from == to){
+            return;
+        }
+        System.arraycopy(posx, from, posx, to, length);
+        System.arraycopy(posy, from, posy, to, length);
+        System.arraycopy(posz, from, posz, to, length);
+        System.arraycopy(velx, from, velx, to, length);
+        System.arraycopy(vely, from, vely, to, length);
+        System.arraycopy(velz, from, velz, to, length);
+        System.arraycopy(prevx, from, prevx, to, length);
+        System.arraycopy(prevy, from, prevy, to, length);
+        System.arraycopy(prevz, from, prevz, to, length);
+        System.arraycopy(size, from, size, to, length);
+        System.arraycopy(color_r, from, color_r, to, length);
+        System.arraycopy(color_g, from, color_g, to, length);
+        System.arraycopy(color_b, from, color_b, to, length);
+        System.arraycopy(dead, from, dead, to, length);
+        System.arraycopy(tag, from, tag, to, length);
+    }
+
+    /**FUNCTION TO REMEMBER WHERE EVERY ENTITY STARTS THIS TICK**/
+    public void savePositions(){
+        System.arraycopy(posx, 0, prevx, 0, count);
+        System.arraycopy(posy, 0, prevy, 0, count);
+        System.arraycopy(posz, 0, prevz, 0, count);
+    }
+
+    /**FUNCTION TO MOVE EVERY ENTITY BY ITS VELOCITY TIMES time OVER scale**/
+    public void integrate(long time, double scale){
+        for(int i = 0; i < count; i++){
+            posx[i] = posx[i] + velx[i]*time/scale;
+            posy[i] = posy[i] + vely[i]*time/scale;
+            posz[i] = posz[i] + velz[i]*time/scale;
+        }
+    }
+
+    /**FUNCTION TO DO savePositions(), integrate() AND bounce() (OR bounce() FIRST) A BLOCK OF ENTITIES AT A TIME**/
+    /**Gives exactly the same numbers as calling them one after the other.**/
+    public void move(long time, double scale, boolean bounceFirst, double boxWidth, double boxHeight, double beginZ, double endZ){
+        mover.moveAxis(posx, velx, prevx, count, time, scale, -boxWidth, boxWidth, bounceDistance, bounceFirst);
+        mover.moveAxis(posy, vely, prevy, count, time, scale, -boxHeight, boxHeight, bounceDistance, bounceFirst);
+        mover.moveAxis(posz, velz, prevz, count, time, scale, endZ, beginZ, bounceDistance, bounceFirst);
+    }
+
+    /**FUNCTION TO MAKE move() USE THE VECTOR API KERNEL, RETURNS FALSE (AND KEEPS THE BLOCKED ONE) IF IT IS NOT THERE**/
+    public boolean useVectorKernel(){
+        if(VECTOR == null)
+            return false;
+        mover = VECTOR;
+        return true;
+    }
+
+    /**FUNCTION TO LOAD game.VectorMotion, WHICH ONLY LINKS WHEN jdk.incubator.vector RESOLVES**/
+    private static AxisMover loadVectorMotion(){
+        try{
+            return (AxisMover)Class.forName("game.VectorMotion").getDeclaredConstructor().newInstance();
+        }
+        catch(ReflectiveOperationException | LinkageError e){
+            //not compiled in, or the JVM was started without the module (or is older than 16)
+            return null;
+        }
+    }
+
+    /**ONE AXIS OF move(): SAVE, MOVE AND BOUNCE n ENTITIES, IN THE ORDER bounceFirst SAYS**/
+    interface AxisMover{
+        void moveAxis(double[] pos, double[] vel, double[] prev, int n, long time, double scale,
+                      double lo, double hi, double bounceDistance, boolean bounceFirst);
+    }
+
+    /**FUNCTION TO MOVE n ENTITIES ALONG ONE AXIS AND BOUNCE THEM OFF THE WALLS AT lo AND hi**/
+    /**Goes through the arrays a block at a time. Moving is a loop with nothing but arithmetic in it, which the JIT**/
+    /**vectorizes (the division is most of the work), and bouncing goes through the same block again while it is**/
+    /**still in the cache, so the arrays are only read from memory once.**/
+    private static void moveAxis(double[] pos, double[] vel, double[] prev, int n, long time, double scale,
+                                 double lo, double hi, double bounceDistance, boolean bounceFirst){
+        for(int start = 0; start < n; start += MOVE_BLOCK){
+            int end = Math.min(start + MOVE_BLOCK, n);
+            if(bounceFirst){
+                //bombs: bounce where they are, then move
+                System.arraycopy(pos, start, prev, start, end - start);
+                bounceAxis(pos, vel, start, end, lo, hi, bounceDistance);
+                for(int i = start; i < end; i++){
+                    pos[i] = pos[i] + vel[i]*time/scale;
+                }
+            }
+            else{
+                //targets: move, then bounce where they got to
+                for(int i = start; i < end; i++){
+                    double p = pos[i];
+                    prev[i] = p;
+                    pos[i] = p + vel[i]*time/scale;
+                }
+                bounceAxis(pos, vel, start, end, lo, hi, bounceDistance);
+            }
+        }
+    }
+
+    /**FUNCTION TO BOUNCE ENTITIES start TO end OFF THE WALLS AT lo AND hi ON ONE AXIS, SAME AS bounce()**/
+    private static void bounceAxis(double[] pos, double[] vel, int start, int end, double lo, double hi, double bounceDistance){
+        for(int i = start; i < end; i++){
+            //one test for both walls, (p - lo)*(hi - p) is only positive strictly between them
+            //(or when it underflows, which only means the two exact tests below are made for nothing)
+            double p = pos[i];
+            if((p - lo)*(hi - p) > 0){
+                continue;
+            }
+            if( pos[i] >= hi){
+                 vel[i] *= -0.9;
+                 pos[i] = hi -  bounceDistance;
+            }
+            else if( pos[i] <= lo){
+                 vel[i] *= -0.9;
+                 pos[i] = lo +  bounceDistance;
+            }
+        }
+    }
+
+    /**FUNCTION TO SHRINK EVERY ENTITY BY time (A SECOND SHRINKS IT BY ONE) AND MARK THE ONES THAT ARE GONE DEAD**/
+    public void shrink(long time){
+        for(int i = 0; i < count; i++){
+            if(size[i] > 0)
+                size[i] -= (double)time/1000000000.0;
+            if(size[i] <= 0) {
+                dead[i] = true;
+            }
+        }
+    }
+
+    /**FUNCTION TO CALCUALTE BOUNCING OFF WALLS**/
+    public void bounce(double boxWidth, double boxHeight, double beginZ, double endZ){
+        for(int i = 0; i < count; i++){
+            //front and back walls
+            if( posz[i] >= beginZ){
+                 velz[i] *= -0.9;
+                 posz[i] = beginZ -  bounceDistance;
+            }
+            else if( posz[i] <= endZ){
+                 velz[i] *= -0.9;
+                 posz[i] = endZ +  bounceDistance;
+            }
+
+            //right and left walls
+            if( posx[i] >= boxWidth )
+            {
+                 velx[i] *= -0.9;
+                 posx[i] = boxWidth -  bounceDistance;
+            }
+            else if( posx[i] <= -boxWidth) {
+                 velx[i] *= -0.9;
+                 posx[i] = -boxWidth +  bounceDistance;
+            }
+
+            //top and bottom walls
+            if( posy[i] >= boxHeight )
+            {
+                 vely[i] *= -0.9;
+                 posy[i] = boxHeight -  bounceDistance;
+            }
+            else if( posy[i] <= -boxHeight) {
+                 vely[i] *= -0.9;
+                 posy[i] = -boxHeight +  bounceDistance;
+            }
+        }
+    }
+
+    /**FUNCTION TO RETURN HOW MANY ENTITIES THERE ARE**/
+    public int size(){
+        return count;
+    }
+
+    /**FUNCTION TO GROW EVERY ARRAY TO capacity ENTRIES**/
+    private void allocate(int capacity){
+        if(posx == null){
+            posx = new double[0];
+            posy = posz = velx = vely = velz = prevx = prevy = prevz = size = posx;
+            color_r = color_g = color_b = new float[0];
+            dead = new boolean[0];
+            tag = new int[0];
+        }
+        posx = Arrays.copyOf(posx, capacity);
+        posy = Arrays.copyOf(posy, capacity);
+        posz = Arrays.copyOf(posz, capacity);
+        velx = Arrays.copyOf(velx, capacity);
+        vely = Arrays.copyOf(vely, capacity);
+        velz = Arrays.copyOf(velz, capacity);
+        prevx = Arrays.copyOf(prevx, capacity);
+        prevy = Arrays.copyOf(prevy, capacity);
+        prevz = Arrays.copyOf(prevz, capacity);
+        size = Arrays.copyOf(size, capacity);
+        color_r = Arrays.copyOf(color_r, capacity);
+        color_g = Arrays.copyOf(color_g, capacity);
+        color_b = Arrays.copyOf(color_b, capacity);
+        dead = Arrays.copyOf(dead, capacity);
+        tag = Arrays.copyOf(tag, capacity);
+    }
+}
@@ -0,0 +1,214 @@
+/**
+ * FixedStepLoop.class
+ *
+ * Runs a Step every so many nanoseconds of wall time, always with the same time, however long the ticks take.
+ *
+ * A scheduler wakes run() up once every step. run() adds the wall time since it last ran to an accumulator and does
+ * one tick for every whole step in it, so a late wakeup is made up for by the next one and the game time never drifts
+ * from the clock. It is bounded so a slow machine does not spiral:
+ *
+ *      1. Catch-up limit  -- one run() does at most maxCatchUp ticks, whole steps still left over are skipped (the game
+ *                            slows down instead of freezing) and counted in skippedTicks()
+ *      2. Overruns        -- a run() whose ticks took longer than a step can not keep up, counted in overruns()
+ *
+ * The game state is always a whole number of steps old, so alpha() tells the renderer how far it is from the last tick
+ * to the next one, to draw things between where they were (prevx..) and where they are (posx..). simulatedUpTo() is
+ * moved on before every tick, so a Step that publishes the state can stamp it with the time it is at, and
+ * alpha(stamp) never pairs one tick's state with another tick's time.
+ *
+ * Everything run() keeps from one call to the next is only touched on the loop thread. start() asks for a fresh start
+ * through a volatile flag, and stop() waits for the tick running now instead of resetting anything under it.
+ *
+ * Metrics: ticksPerSecond() over the last second, lag() (how far the game time is behind the clock after the last
+ * run), ticks(), skippedTicks(), overruns().
+ **/
+
+package game;
+
+import java.util.concurrent.*;
+
+public class FixedStepLoop implements Runnable
+{
+    /**WHAT THE LOOP RUNS EVERY TICK**/
+    public interface Step
+    {
+        /**Called with the same time, in nanoseconds, every tick**/
+        void step(long time);
+    }
+
+    /**Class Member Variables**/
+    final long step;//nanoseconds per tick
+    final int maxCatchUp;//most ticks one run() does
+    final Step target;
+    ScheduledExecutorService scheduler;
+
+    //wall time the last run() started at and wall time not simulated yet, only touched by run()
+    private long lastRun;
+    private long accumulator;
+    //set by start(), the next run() starts from the clock instead of catching up
+    private volatile boolean restart = true;
+    //wall time the game state is at, for alpha()
+    private volatile long simulatedUpTo;
+
+    //metrics, written by run() only
+    private volatile long ticks, skippedTicks, overruns, lag;
+    private volatile double ticksPerSecond;
+    private long windowStart, windowTicks;
+
+    /**CONSTRUCTOR**/
+    public FixedStepLoop(long step, int maxCatchUp, Step target)
+    {
+        if(step <= 0 || maxCatchUp < 1)
+            throw new IllegalArgumentException("need a positive step and at least one tick per run");
+        this.step = step;
+        this.maxCatchUp = maxCatchUp;
+        this.target = target;
+    }
+
+    /**FUNCTION TO START CALLING run() EVERY STEP ON A THREAD OF ITS OWN**/
+    public synchronized void start()
+    {
+        if(scheduler != null)
+            return;
+        restart = true;
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "update");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleAtFixedRate(this, 0, step, TimeUnit.NANOSECONDS);
+    }
+
+    /**FUNCTION TO STOP THE LOOP, THE TICK RUNNING NOW IS FINISHED BEFORE IT RETURNS**/
+    public synchronized void stop()
+    {
+        if(scheduler == null)
+            return;
+        scheduler.shutdown();
+        try
+        {
+            //a run() can do maxCatchUp ticks, give it well over that to finish
+            scheduler.awaitTermination(Math.max(step*maxCatchUp*4, 1000000000L), TimeUnit.NANOSECONDS);
+        }
+        catch(InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+    }
+
+    /**FUNCTION TO DO EVERY TICK THE CLOCK HAS MOVED ON SINCE THE LAST CALL**/
+    public void run()
+    {
+        long now = System.nanoTime();
+        if(restart)
+        {
+            //first run after start(), nothing to catch up on
+            restart = false;
+            lastRun = now;
+            accumulator = 0;
+            windowStart = now;
+            simulatedUpTo = now;
+            return;
+        }
+        accumulator += now - lastRun;
+        lastRun = now;
+
+        //one tick per whole step, up to the catch-up limit
+        int done = 0;
+        try
+        {
+            while(accumulator >= step && done < maxCatchUp)
+            {
+                //the time this tick brings the game to, before the step publishes it
+                accumulator -= step;
+                simulatedUpTo = now - accumulator;
+                target.step(step);
+                done++;
+            }
+        }
+        catch(RuntimeException exception)
+        {
+            //the scheduler would stop calling run() without a word
+            exception.printStackTrace();
+            throw exception;
+        }
+
+        //too far behind, drop the whole steps that are left
+        if(accumulator >= step)
+        {
+            long behind = accumulator/step;
+            skippedTicks += behind;
+            accumulator -= behind*step;
+        }
+
+        long end = System.nanoTime();
+        if(end - now > step)
+            overruns++;
+        ticks += done;
+        simulatedUpTo = now - accumulator;
+        lag = end - simulatedUpTo;
+
+        //tick rate over the last second
+        windowTicks += done;
+        if(end - windowStart >= 1000000000L)
+        {
+            ticksPerSecond = windowTicks*1e9/(end - windowStart);
+            windowStart = end;
+            windowTicks = 0;
+        }
+    }
+
+    /**FUNCTION TO RETURN HOW FAR (0 TO 1) THE CLOCK IS FROM THE LAST TICK TO THE NEXT ONE, FOR DRAWING BETWEEN TICKS**/
+    public double alpha()
+    {
+        return alpha(simulatedUpTo);
+    }
+
+    /**FUNCTION TO RETURN alpha() FOR STATE THAT WAS AT WALL TIME simulated, SEE simulatedUpTo()**/
+    public double alpha(long simulated)
+    {
+        double alpha = (System.nanoTime() - simulated)/(double)step;
+        return alpha < 0 ? 0 : alpha > 1 ? 1 : alpha;
+    }
+
+    /**FUNCTION TO RETURN THE WALL TIME THE GAME STATE IS AT, ALREADY THAT OF THE TICK RUNNING NOW WHILE IT RUNS**/
+    public long simulatedUpTo()
+    {
+        return simulatedUpTo;
+    }
+
+    /**GETTERS FOR THE METRICS**/
+    public long step()
+    {
+        return step;
+    }
+
+    public long ticks()
+    {
+        return ticks;
+    }
+
+    public long skippedTicks()
+    {
+        return skippedTicks;
+    }
+
+    public long overruns()
+    {
+        return overruns;
+    }
+
+    /**Nanoseconds the game time was behind the clock when the last run() finished**/
+    public long lag()
+    {
+        return lag;
+    }
+
+    public double ticksPerSecond()
+    {
+        return ticksPerSecond;
+    }
+}
@@ -3,10 +3,6 @@
  * 
  * Contains:
  * 
- *  Target.class
- *   
- *  Bomb.class
- *      
  *  Camera.class
  *      left()
  *      right()
@@ -18,8 +14,13 @@
  * This is the class for our 3D game.
  * - Room is built with Quads [located at position -5000]
  * - Targets are cubes that rotate, bombs are spheres
- * - update() function uses 3D Tree to return a certain number of neighbors
- * - display function draws bombs and targets
+ * - update() function moves the Simulation on, which uses a spatial index (3D Tree, or a uniform grid with -Dgame.index=grid, or sweep and prune with -Dgame.index=sap) to find what each bomb hits
+ * - update() runs on a FixedStepLoop, every tick moves the game the same time on (-Dgame.tick=ms, 30 by default)
+ * - display function draws the simulation's bombs and targets, between where they were and are by how far into the next tick it is
+ * - display function only reads the newest Snapshot update() published, it never waits for a tick and a tick never waits for it
+ * - -Dgame.seed=n plays the same targets as an earlier game
+ * - -Dgame.respawn=n sends in a new wave of targets whenever fewer than n are left
+ * - key handlers only put a command on an InputQueue, update() applies them at the start of the next tick
  * 
  * Special additions:
  * - Booleans used for keypresses so you can move press more than one button at once
@@ -36,7 +37,6 @@ import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
-import java.util.*;
 import javax.media.opengl.*;
 import javax.media.opengl.glu.GLU;
 import javax.swing.JApplet;
@@ -54,36 +54,40 @@ public class Game extends JApplet implements GLEventListener, KeyListener
     FPSAnimator animator;
     GLU glu;
     GLUT glut;
-    double theta;
-    long lastTime;
-    Thread updateThread;
+    FixedStepLoop loop;
     Camera camera;
     double boxWidth, boxHeight, boxLength;//box size
     double beginZ, endZ;//shift box on z axis
     double targetX, targetY, targetZ;
     
     /**BOMBS AND TARGETS**/
-    ArrayList<Bomb> bombs; 
-    ListIterator<Bomb> bi; 
-    ArrayList<Target> targets;
-    ListIterator<Target> ti; 
-    int targetAmount;
+    Simulation sim;
+    Snapshot.Buffer snapshots = new Snapshot.Buffer();//written by update(), read by display()
     
-    /** GRAVITY AND NEIGHBORS**/
-    double squareRadius = 10000;//sphere of neighbors to look around
+    /**KEY COMMANDS**/
+    //the key handlers offer every press and release, update() drains them
+    InputQueue input = new InputQueue(256);
+    InputQueue.Handler keys = new InputQueue.Handler() {
+        public void command(int kind, int keyCode) {
+            if(kind == InputQueue.PRESS) {
+                pressed(keyCode);
+            }
+            else {
+                released(keyCode);
+            }
+        }
+    };
     
     /**MULTIPLE KEY PRESS BOOLEANS**/
+    //only touched by update(), through the key commands
     boolean forward, backward,strafingLeft, strafingRight, strafingUp, strafingDown, turningLeft, turningRight, turningUp, turningDown;
     
     /**GAME CONSTRUCTOR**/
     public Game() {
         //BOMBS AND TARGETS SETUP
-        bombs = new ArrayList<Bomb>();
-        targets = new ArrayList<Target>();
-        
-        //DELTA TIME SETUP
-        lastTime = System.nanoTime();
-        theta = 0;        
+        //-Dgame.index=grid for the uniform grid, sap for sweep and prune
+        sim = new Simulation(Long.getLong("game.seed", System.nanoTime()), 100, System.getProperty("game.index", "kdtree"));
+        sim.respawnAt = Integer.getInteger("game.respawn", 0);
         
         //MOVEMENT SETUP
         forward = false;
@@ -103,102 +107,27 @@ public class Game extends JApplet implements GLEventListener, KeyListener
         camera = new Camera(0,0,-5100,                 0,0,1,                         0,1,0);
         
         //BOX SETUP
-        boxWidth = 500;
-        boxHeight = 300;
-        boxLength = 500;        
-        beginZ = boxLength - boxLength - 5000;
-        endZ = beginZ - boxLength;        
-        targetX = boxWidth - 20;
-        targetY = boxHeight - 20;
+        //same box the simulation bounces things off
+        boxWidth = sim.boxWidth;
+        boxHeight = sim.boxHeight;
+        boxLength = sim.boxLength;
+        beginZ = sim.beginZ;
+        endZ = sim.endZ;
+        targetX = sim.targetX;
+        targetY = sim.targetY;
         
-        //CREATE TARGETS
-        targetAmount = 100;
-        for(int i = 0; i < targetAmount; i++){
-            //positions
-            double posX = Math.random()*(targetX + targetX )-targetX;
-            double posY = Math.random()*(targetY+targetY)-targetY;
-            double posZ= ( Math.random()*(beginZ - endZ) + endZ);           
-            //velocities
-            double velx = Math.random()*0.1;
-            double vely = Math.random()*0.1;
-            double velz = Math.random()*0.1;
-            //add to list
-            targets.add(new Target(posX,posY,posZ, velx , vely, velz));
-        }
+        //FIRST SNAPSHOT, SO THERE IS SOMETHING TO DRAW BEFORE THE FIRST TICK
+        publish();
     }
     
     /**GAME UPDATE FUNCTION**/
-    public synchronized void update () {
-        //DELTA TIME
-        long time = System.nanoTime() - lastTime;
-        lastTime = System.nanoTime();
-        theta += time/10000000000.0;
-        
-        //CREATE KD TREE
-        KD_Tree tree = new KD_Tree(targets);
+    public void update (long time) {
+        /**KEY COMMANDS**/
+        //every key pressed or released since the last tick, in order
+        input.drain(keys);
         
-        
-        /**BOMBS**/
-        bi = bombs.listIterator();        
-        //check for first element
-        if(bi.hasNext())
-        {
-            bi.next();
-            bi.previous().update(time);
-        }        
-        //FOR ALL BOMBS
-        while (bi.hasNext()) {
-            Bomb b = bi.next();
-            b.update(time);
-            
-            LinkedList<Target> neighbors = tree.neighbors(b, squareRadius);
-            
-            /**CHECK COLLISIONS**/
-            //start at beginning of neighbors linked list 
-            ListIterator<Target> bj = neighbors.listIterator();
-            
-            while(bj.hasNext()) {
-                Target t = bj.next();
-                
-                //distance formula
-                double distance = sqr(b.posx - t.posx) + 
-                                  sqr(b.posy - t.posy) +
-                                  sqr(b.posz - t.posz); 
-                if(distance < 200 ){
-                    t.isDead = true;
-                    b.isDead = true;
-                }
-            }
-            
-            //remove if necessary
-            if(b.dead())
-            {
-                //Use iterator remove
-                bi.remove();
-            }
-            
-        }
-        
-        /**TARGETS**/
-        ti = targets.listIterator();        
-        //check so first element in array list can be updated
-        if(ti.hasNext())
-        {
-            ti.next();
-            ti.previous().update(time);
-        }        
-        while (ti.hasNext()) {
-            Target t = ti.next();
-            t.update(time);
-
-            //remove if necessary
-            if(t.dead())
-            {
-                //Use iterator remove
-                ti.remove();
-            }
-            
-        }
+        /**BOMBS AND TARGETS**/
+        sim.update(time);
         
         /**CAMERA MOVEMENT**/        
         if(forward) {
@@ -225,12 +154,26 @@ public class Game extends JApplet implements GLEventListener, KeyListener
         if(turningDown) {
             camera.lookDown();
         }
-             
+        
+        /**SNAPSHOT FOR display()**/
+        publish();
+    }
+    
+    /**FUNCTION TO COPY WHAT display() DRAWS INTO THE BACK SNAPSHOT AND PUBLISH IT**/
+    void publish() {
+        Snapshot snapshot = snapshots.back();
+        snapshot.copy(sim);
+        snapshot.time = loop == null ? System.nanoTime() : loop.simulatedUpTo();
+        snapshot.setCamera(camera.eyeX, camera.eyeY, camera.eyeZ, camera.centerX, camera.centerY, camera.centerZ, camera.upX, camera.upY, camera.upZ);
+        snapshots.publish();
     }
     
     /**GAME DISPLAY FUNCTION**/
-    public synchronized void display (GLAutoDrawable gld)
+    public void display (GLAutoDrawable gld)
     {        
+        //newest tick, it does not change while this frame is drawn
+        Snapshot snapshot = snapshots.front();
+        
         /**----------SETUP OPENGL---------**/
         final GL2 gl = gld.getGL().getGL2();
         // Clear the buffer, need to do both the color and the depth buffers
@@ -238,7 +181,7 @@ public class Game extends JApplet implements GLEventListener, KeyListener
         // Load the identity into the Modelview matrix
         gl.glLoadIdentity();
         // Setup the camera.  The camera is located at the origin, looking along the positive z-axis, with y-up
-        camera.setLookAt(glu); 
+        glu.gluLookAt(snapshot.eyeX, snapshot.eyeY, snapshot.eyeZ, snapshot.centerX, snapshot.centerY, snapshot.centerZ, snapshot.upX, snapshot.upY, snapshot.upZ);
         /**----------SETUP LIGHT #1---------**/
         // set the position and diffuse/ambient terms of the light
         //              bit to right,  bit up,  behind you   ambient?
@@ -296,34 +239,50 @@ public class Game extends JApplet implements GLEventListener, KeyListener
         gl.glVertex3d( boxWidth, -boxHeight,  endZ);
         gl.glVertex3d(-boxWidth, -boxHeight, endZ);   
 
+        //how far into the next tick it is, to draw everything between where it was and where it is
+        double alpha = loop.alpha(snapshot.time);
+        
         /**BOMBS**/
-        bi = bombs.listIterator();        
-        //check so first element in array list can be displayed
-        if(bi.hasNext())
-        {
-            bi.next();
-            bi.previous().draw(gld);
-        }        
-        while (bi.hasNext()) {
-            Bomb b = bi.next();
-            b.draw(gld);
+        for(int i = 0; i < snapshot.bombs.count; i++) {
+            drawBomb(gld, snapshot.bombs, i, alpha);
         }
              
         /**TARGETS**/
-        ti = targets.listIterator();        
-        //check so first element in array list can be displayed
-        if(ti.hasNext())
-        {
-            ti.next();
-            ti.previous().draw(gld);
-        }        
-        while (ti.hasNext()) {
-            Target t = ti.next();
-            t.draw(gld);
+        for(int i = 0; i < snapshot.targets.count; i++) {
+            drawTarget(gld, snapshot.targets, i, snapshot.theta, alpha);
         }
         gl.glEnd();
     }
     
+    /**DRAW FOR SINGLE BOMB**/
+    public void drawBomb(GLAutoDrawable gld, Snapshot.Bodies b, int i, double alpha) {
+        /**----------SETUP OPENGL---------**/
+        final GL2 gl = gld.getGL().getGL2();
+        gl.glPushMatrix();
+
+        //draw bomb
+        gl.glTranslated(lerp(b.prevx[i], b.posx[i], alpha), lerp(b.prevy[i], b.posy[i], alpha), lerp(b.prevz[i], b.posz[i], alpha));
+        setMaterial(gld, b.color_r[i], b.color_g[i], b.color_b[i]);
+        glut.glutSolidSphere(b.size[i], 50, 50);
+        
+        gl.glPopMatrix(); 
+        
+        gl.glEnd();
+    }
+    
+    /**DRAW FOR SINGLE TARGET**/
+    public void drawTarget(GLAutoDrawable gld, Snapshot.Bodies t, int i, double theta, double alpha) {
+        /**----------SETUP OPENGL---------**/
+        final GL2 gl = gld.getGL().getGL2();
+        gl.glPushMatrix();            
+        gl.glTranslated(lerp(t.prevx[i], t.posx[i], alpha), lerp(t.prevy[i], t.posy[i], alpha), lerp(t.prevz[i], t.posz[i], alpha));
+        gl.glRotated(360*theta, 0, 0, 1);
+        setMaterial(gld, t.color_r[i], t.color_g[i], t.color_b[i]);
+        glut.glutSolidCube((float)t.size[i]);
+        gl.glPopMatrix();             
+        gl.glEnd();
+    }
+    
     /**FUNCTION USED TO SET DIFFUSE/AMBIENT AND COLOR FOR OPENGL**/
     public void setMaterial(GLAutoDrawable gld, float r, float g, float b)
     {
@@ -340,87 +299,87 @@ public class Game extends JApplet implements GLEventListener, KeyListener
     } 
 
     /**KEY DOWN HANDLER**/
-    public synchronized void keyPressed (KeyEvent e)
+    public void keyPressed (KeyEvent e)
+    {
+        //applied by the next tick, the update thread owns the camera and the simulation
+        input.offer(InputQueue.PRESS, e.getKeyCode(), System.nanoTime());
+    }
+
+    /**KEY UP HANDLER**/
+    public void keyReleased (KeyEvent e)
+    {
+        input.offer(InputQueue.RELEASE, e.getKeyCode(), System.nanoTime());
+    }
+
+    /**FUNCTION TO APPLY A KEY PRESS, CALLED BY update()**/
+    void pressed (int keyCode)
     {
         /**MOVEMENT**/
-        if (e.getKeyCode() == KeyEvent.VK_W) {
+        if (keyCode == KeyEvent.VK_W) {
             forward = true;
         }
-        if (e.getKeyCode() == KeyEvent.VK_S) {
+        if (keyCode == KeyEvent.VK_S) {
             backward = true;
         }
-        if (e.getKeyCode() == KeyEvent.VK_A) {
+        if (keyCode == KeyEvent.VK_A) {
             strafingLeft = true;
         }
-        if (e.getKeyCode() == KeyEvent.VK_D) {
+        if (keyCode == KeyEvent.VK_D) {
             strafingRight = true;        
             }
         
         /**LOOKING**/
-        if (e.getKeyCode() == KeyEvent.VK_LEFT) {
+        if (keyCode == KeyEvent.VK_LEFT) {
             turningLeft = true;
         }
-        if (e.getKeyCode() == KeyEvent.VK_RIGHT) {
+        if (keyCode == KeyEvent.VK_RIGHT) {
             turningRight = true;
         }
-        if (e.getKeyCode() == KeyEvent.VK_UP) {
+        if (keyCode == KeyEvent.VK_UP) {
             turningUp = true;
         }
-        if (e.getKeyCode() == KeyEvent.VK_DOWN) {
+        if (keyCode == KeyEvent.VK_DOWN) {
             turningDown = true;
         }
         
         /**SHOOTING**/
-        if (e.getKeyCode() == KeyEvent.VK_SPACE) {
+        if (keyCode == KeyEvent.VK_SPACE) {
             //find direction camera is looking
             double dx = camera.centerX - camera.eyeX, dy = camera.centerY - camera.eyeY, dz = camera.centerZ - camera.eyeZ;
-            //create unit vector
-            double m = Math.sqrt(sqr(dx)+sqr(dy)+sqr(dz));
-            dx /= m;
-            dy /= m;
-            dz /= m;            
-            //calculate position to place bomb
-            double posx = camera.centerX + dx*30;
-            double posy = camera.centerY + dy*30;
-            double posz = camera.centerZ + dz*30;            
-            //velocity
-            double velx = dx*300;
-            double vely = dy*300;
-            double velz = dz*300;
-            //add            
-            bombs.add(new Bomb(posx, posy, posz, velx, vely, velz)); 
+            //shoot from just in front of the camera
+            sim.fire(camera.centerX, camera.centerY, camera.centerZ, dx, dy, dz);
          }
 
     }
 
-    /**KEY UP HANDLER**/
-    public void keyReleased (KeyEvent e)
+    /**FUNCTION TO APPLY A KEY RELEASE, CALLED BY update()**/
+    void released (int keyCode)
     {
         /**MOVEMENT**/
-        if (e.getKeyCode() == KeyEvent.VK_W) {
+        if (keyCode == KeyEvent.VK_W) {
             forward = false;
         }
-        if (e.getKeyCode() == KeyEvent.VK_S) {
+        if (keyCode == KeyEvent.VK_S) {
             backward = false;
         }
-        if(e.getKeyCode() == KeyEvent.VK_A) {
+        if(keyCode == KeyEvent.VK_A) {
             strafingLeft = false;
         }
-        if (e.getKeyCode() == KeyEvent.VK_D) {
+        if (keyCode == KeyEvent.VK_D) {
             strafingRight = false;        
             }
         
         /**LOOKING**/
-        if (e.getKeyCode() == KeyEvent.VK_LEFT) {
+        if (keyCode == KeyEvent.VK_LEFT) {
             turningLeft = false;
         }
-        if (e.getKeyCode() == KeyEvent.VK_RIGHT) {
+        if (keyCode == KeyEvent.VK_RIGHT) {
             turningRight = false;
         }  
-        if (e.getKeyCode() == KeyEvent.VK_UP) {
+        if (keyCode == KeyEvent.VK_UP) {
             turningUp = false;
         }
-        if (e.getKeyCode() == KeyEvent.VK_DOWN) {
+        if (keyCode == KeyEvent.VK_DOWN) {
             turningDown = false;
         }
     }
@@ -469,237 +428,32 @@ public class Game extends JApplet implements GLEventListener, KeyListener
         canvas.addKeyListener(this);
         // add the canvas to the frame
         animator = new FPSAnimator(canvas, 60);
-        updateThread = new Thread(new Runnable() {
-        public void run() {
-            while(true) {
-            update();
-            /**MULTI THREADING? (RUNS FASTER)**/
-            try
-            {
-                Thread.sleep(30);
-            }
-            catch (InterruptedException exception)
-            {
-                exception.printStackTrace();
+        //same time every tick, a few ticks at most to catch up after a stall
+        loop = new FixedStepLoop(Long.getLong("game.tick", 30)*1000000, 5, new FixedStepLoop.Step() {
+            public void step(long time) {
+                update(time);
             }
-            }
-        }
         });
     }
     public void start() {
         animator.start();
-        updateThread.start();
+        loop.start();
     } 
     
     public void stop() {
         animator.stop();
+        loop.stop();
     }
 
+    /**FUNCTION TO RETURN THE INPUT QUEUE, FOR CALLERS THAT WANT ITS METRICS (HOW LONG KEY PRESSES TOOK TO REACH THE GAME)**/
+    public InputQueue input() { return input;}
+
     /**FUNCTION TO SQUARE INPUT**/
     double sqr( double x) { return x*x;}
- 
-    /**INNER CLASS BOMB**/
-    public class Bomb {
-        /**Class Member Variables**/
-        //positions, velocities, and forces using f = ma
-        double posx, posy, posz, velx, vely, velz;
-        float color_r, color_g, color_b;
-        double size;
-        double bounceDistance;
-        boolean isDead;
-        
-        /**BOID CONSTRUCTOR**/
-        Bomb(double posx, double posy, double posz, double velx, double vely, double velz) {
-            //initiate variables
-            this.posx = posx;
-            this.posy = posy;
-            this.posz = posz;
-            this.velx = velx;
-            this.vely = vely;
-            this.velz = velz;
-            //size
-            size = 5.0;
-            bounceDistance = size/2;
-            //color
-            color_r = (float)Math.random();
-            color_g = (float)Math.random();
-            color_b = (float)Math.random();
-            //dead boolean
-            isDead = false;
-        }
-        
-        /**UPDATE METHOD**/
-        public void update(long time) 
-        {
-            //shrink size according to delta time
-            if(size > 0)
-                size -= (double)time/1000000000.0;
-            if(size <= 0) {
-                isDead = true;
-            }
-            
-            bounce();
-            
-            //update position
-            posx = posx + velx*time/500000000.0;
-            posy = posy + vely*time/500000000.0;
-            posz = posz + velz*time/500000000.0;
-        }
-           
-        /**DRAW FOR SINGLE BOMB**/
-        public void draw(GLAutoDrawable gld) {
-            /**----------SETUP OPENGL---------**/
-            final GL2 gl = gld.getGL().getGL2();
-            gl.glPushMatrix();
-
-            //draw bomb
-            gl.glTranslated(posx, posy, posz);
-            setMaterial(gld, color_r, color_g, color_b);
-            glut.glutSolidSphere(size, 50, 50);
-            
-            gl.glPopMatrix(); 
-            
-            gl.glEnd();
-        }
-        
-        /**GETTER FOR isDead BOOLEAN**/
-        public boolean dead() 
-        {
-            return isDead;
-        }
-        
-        /**FUNCTION TO CALCUALTE BOUNCING OFF WALLS**/
-        public void bounce() {
-            //front and back walls
-            if( posz >= beginZ){
-                 velz *= -0.9;
-                 posz = beginZ -  bounceDistance;
-            }
-            else if( posz <= endZ){
-                 velz *= -0.9;
-                 posz = endZ +  bounceDistance;
-            }
-            
-            //right and left walls
-            if( posx >= boxWidth )
-            {
-                 velx *= -0.9;
-                 posx = boxWidth -  bounceDistance;
-            }
-            else if( posx <= -boxWidth) {
-                 velx *= -0.9;
-                 posx = -boxWidth +  bounceDistance;
-            }
-            
-            //top and bottom walls
-            if( posy >= boxHeight )
-            {
-                 vely *= -0.9;
-                 posy = boxHeight -  bounceDistance;
-            }
-            else if( posy <= -boxHeight) {
-                 vely *= -0.9;
-                 posy = -boxHeight +  bounceDistance;
-            }
-        }
-    }
-    
-    /**INNER CLASS TARGET**/
-    public class Target {
-        /**Class Member Variables**/
-        //positions, velocities, and forces using f = ma
-        double posx, posy, posz, velx, vely, velz;
-        float color_r, color_g, color_b;
-        double size;
-        double bounceDistance;
-        boolean isDead;
-        
-        /**TARGET CONSTRUCTOR**/
-        Target(double posx, double posy, double posz, double velx, double vely, double velz) {
-            //initiate variables
-            this.posx = posx;
-            this.posy = posy;
-            this.posz = posz;
-            this.velx = velx;
-            this.vely = vely;
-            this.velz = velz;
-            
-            size = 5.0;
-            bounceDistance = size/2;
-            
-            color_r = (float)Math.random();
-            color_g = (float)Math.random();
-            color_b = (float)Math.random();
-            
-            isDead = false;
-        }
-        
-        /**UPDATE METHOD**/
-        public void update(long time) 
-        {
-            //update position
-            posx = posx + velx*time/2500000.0;
-            posy = posy + vely*time/2500000.0;
-            posz = posz + velz*time/2500000.0;
-            
-            bounce();
-        }
-           
-        /**DRAW FOR SINGLE TARGET**/
-        public void draw(GLAutoDrawable gld) {
-            /**----------SETUP OPENGL---------**/
-            final GL2 gl = gld.getGL().getGL2();
-            gl.glPushMatrix();            
-            gl.glTranslated(posx, posy, posz);
-            gl.glRotated(360*theta, 0, 0, 1);
-            setMaterial(gld, color_r, color_g, color_b);
-            glut.glutSolidCube((float)size);
-            gl.glPopMatrix();             
-            gl.glEnd();
-        }
-        
-        /**GETTER FOR isDead BOOLEAN**/
-        public boolean dead() 
-        {
-            return isDead;
-        }
-        
-        /**FUNCTION TO CALCUALTE BOUNCING OFF WALLS**/
-        public void bounce() {
-            //front and back walls
-            if( posz >= beginZ){
-                 velz *= -0.9;
-                 posz = beginZ -  bounceDistance;
-            }
-            else if( posz <= endZ){
-                 velz *= -0.9;
-                 posz = endZ +  bounceDistance;
-            }
-            
-            //right and left walls
-            if( posx >= boxWidth )
-            {
-                 velx *= -0.9;
-                 posx = boxWidth -  bounceDistance;
-            }
-            else if( posx <= -boxWidth) {
-                 velx *= -0.9;
-                 posx = -boxWidth +  bounceDistance;
-            }
-            
-            //top and bottom walls
-            if( posy >= boxHeight )
-            {
-                 vely *= -0.9;
-                 posy = boxHeight -  bounceDistance;
-            }
-            else if( posy <= -boxHeight) {
-                 vely *= -0.9;
-                 posy = -boxHeight +  bounceDistance;
-            }
-        }
-    }
     
+    /**FUNCTION TO GO alpha OF THE WAY FROM a TO b**/
+    double lerp(double a, double b, double alpha) { return a + (b - a)*alpha;}
+ 
     /**INNER CLASS CAMERA**/
     public class Camera {
         double eyeX, eyeY, eyeZ, centerX, centerY, centerZ, upX, upY, upZ;
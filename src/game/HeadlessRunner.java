@@ -0,0 +1,189 @@
+/**
+ * HeadlessRunner.class
+ *
+ * Runs the Simulation without a window, AWT or OpenGL, so it can be timed on machines without a screen or a GPU.
+ *
+ * - Fixed timestep: every tick moves the game on by the same -dt milliseconds, however long the tick took to compute
+ * - Scripted bombs: every -every ticks -fire bombs are shot from random points in the box at random targets
+ * - Everything random comes from -seed, so the same options play the same game and print the same checksum
+ *
+ * After -warmup ticks (run, but not timed) it runs -ticks ticks and prints ticks per second, the milliseconds every
+ * phase of a tick took on average, how many hits there were, what is left and the checksum of where everything ended up.
+ *
+ * With -respawn n a wave of new targets brings them back up to -targets whenever fewer than n are left, so a long run
+ * keeps shooting at a full box. It also prints how many bytes a tick allocated on average (on the thread running the
+ * ticks, the parallel parts of the colliders and the tree build are not counted) and how often the stores had to grow
+ * for a new bomb or target instead of reusing the slot of a dead one, which should both stop once the game is under way.
+ *
+ * With -realtime true the ticks run on a FixedStepLoop against the clock, like in the game, instead of back to back,
+ * and it also prints the loop's tick rate, lag, skipped ticks and overruns, to see whether a machine keeps up.
+ *
+ * Run with: java game.HeadlessRunner [-seed 1] [-targets 100] [-ticks 10000] [-warmup 1000] [-dt 16] [-every 10] [-fire 1] [-index kdtree] [-respawn 0] [-realtime false]
+ **/
+
+package game;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+
+public class HeadlessRunner
+{
+    /**Class Member Variables**/
+    long seed = 1;
+    int targets = 100;
+    long ticks = 10000;
+    long warmup = 1000;
+    double dtMillis = 16;
+    int fireEvery = 10;
+    int fireCount = 1;
+    String index = "kdtree";
+    int respawnAt = 0;
+    boolean realtime = false;
+
+    Simulation sim;
+    Random script;//picks where bombs are shot from and at, apart from the simulation's own random numbers
+    long allocated;//bytes the ticks allocated since the warmup
+    //looked up once, looking it up every tick allocates more than the tick does
+    static final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        HeadlessRunner runner = new HeadlessRunner(args);
+        runner.run();
+    }
+
+    /**CONSTRUCTOR THAT READS THE OPTIONS, ANYTHING IT DOES NOT KNOW IS AN ERROR**/
+    public HeadlessRunner(String[] args)
+    {
+        for(int i = 0; i < args.length; i++)
+        {
+            String option = args[i];
+            if(i + 1 >= args.length)
+                throw new IllegalArgumentException("missing value for " + option);
+            String value = args[++i];
+
+            if(option.equals("-seed"))
+                seed = Long.parseLong(value);
+            else if(option.equals("-targets"))
+                targets = Integer.parseInt(value);
+            else if(option.equals("-ticks"))
+                ticks = Long.parseLong(value);
+            else if(option.equals("-warmup"))
+                warmup = Long.parseLong(value);
+            else if(option.equals("-dt"))
+                dtMillis = Double.parseDouble(value);
+            else if(option.equals("-every"))
+                fireEvery = Integer.parseInt(value);
+            else if(option.equals("-fire"))
+                fireCount = Integer.parseInt(value);
+            else if(option.equals("-index"))
+                index = value;
+            else if(option.equals("-respawn"))
+                respawnAt = Integer.parseInt(value);
+            else if(option.equals("-realtime"))
+                realtime = Boolean.parseBoolean(value);
+            else
+                throw new IllegalArgumentException("unknown option " + option);
+        }
+        if(fireEvery < 1)
+            throw new IllegalArgumentException("-every must be at least 1");
+    }
+
+    /**FUNCTION TO PLAY THE WHOLE RUN AND PRINT THE REPORT**/
+    public void run() throws InterruptedException
+    {
+        sim = new Simulation(seed, targets, index);
+        sim.respawnAt = respawnAt;
+        script = new Random(seed*31 + 7);
+        final long dt = (long)(dtMillis*1000000);
+
+        //warmup, so the JIT has compiled the tick before it is timed
+        for(long tick = 0; tick < warmup; tick++)
+            tick(tick, dt);
+        sim.resetCounters();
+        long hits = sim.targets.poolHits + sim.bombs.poolHits, misses = sim.targets.poolMisses + sim.bombs.poolMisses;
+        allocated = 0;
+
+        long start = System.nanoTime();
+        FixedStepLoop loop = null;
+        if(realtime)
+        {
+            //same ticks, on the clock
+            final CountDownLatch finished = new CountDownLatch(1);
+            loop = new FixedStepLoop(dt, 5, new FixedStepLoop.Step() {
+                long tick = warmup;
+                public void step(long time) {
+                    if(tick < warmup + ticks)
+                        tick(tick++, time);
+                    else
+                        finished.countDown();
+                }
+            });
+            loop.start();
+            finished.await();
+            loop.stop();
+        }
+        else
+        {
+            for(long tick = warmup; tick < warmup + ticks; tick++)
+                tick(tick, dt);
+        }
+        long time = System.nanoTime() - start;
+        hits = sim.targets.poolHits + sim.bombs.poolHits - hits;
+        misses = sim.targets.poolMisses + sim.bombs.poolMisses - misses;
+
+        //report
+        double n = Math.max(sim.ticks, 1);
+        System.out.printf("index %s, seed %d, %d targets, %d ticks of %.1fms, %d bombs every %d ticks, %s kernel%n",
+                          index, seed, targets, ticks, dtMillis, fireCount, fireEvery, sim.kernel());
+        System.out.printf("%-22s %14.1f%n", "ticks/s", sim.ticks/(time/1e9));
+        System.out.printf("%-22s %14.4f%n", "ms/tick", time/1e6/n);
+        System.out.printf("%-22s %14.4f%n", "  index ms/tick", sim.indexTime/1e6/n);
+        System.out.printf("%-22s %14.4f%n", "  bombs ms/tick", sim.bombTime/1e6/n);
+        System.out.printf("%-22s %14.4f%n", "  collide ms/tick", sim.collideTime/1e6/n);
+        System.out.printf("%-22s %14.4f%n", "  targets ms/tick", sim.targetTime/1e6/n);
+        System.out.printf("%-22s %14d%n", "hits", sim.hits);
+        System.out.printf("%-22s %14d%n", "targets left", sim.targets.count);
+        System.out.printf("%-22s %14d%n", "bombs left", sim.bombs.count);
+        System.out.printf("%-22s %14d%n", "targets respawned", sim.respawned);
+        System.out.printf("%-22s %14d%n", "pool hits", hits);
+        System.out.printf("%-22s %14d%n", "pool misses", misses);
+        System.out.printf("%-22s %14.1f%n", "bytes/tick", allocated/n);
+        System.out.printf("%-22s %14s%n", "checksum", Long.toHexString(sim.checksum()));
+        if(loop != null)
+        {
+            System.out.printf("%-22s %14.1f%n", "loop ticks/s", loop.ticksPerSecond());
+            System.out.printf("%-22s %14.3f%n", "loop lag ms", loop.lag()/1e6);
+            System.out.printf("%-22s %14d%n", "loop skipped ticks", loop.skippedTicks());
+            System.out.printf("%-22s %14d%n", "loop overruns", loop.overruns());
+        }
+    }
+
+    /**FUNCTION TO SHOOT THIS TICK'S SCRIPTED BOMBS AND MOVE THE SIMULATION ONE TIMESTEP ON**/
+    void tick(long tick, long dt)
+    {
+        long bytes = allocatedBytes();
+        if(tick % fireEvery == 0)
+        {
+            for(int i = 0; i < fireCount && sim.targets.count > 0; i++)
+            {
+                //from a random point in the box at a random target, a little off so not every bomb hits
+                double x = (script.nextDouble()*2 - 1)*sim.targetX;
+                double y = (script.nextDouble()*2 - 1)*sim.targetY;
+                double z = sim.endZ + script.nextDouble()*(sim.beginZ - sim.endZ);
+                int t = script.nextInt(sim.targets.count);
+                sim.fire(x, y, z, sim.targets.posx[t] - x + script.nextGaussian()*20, sim.targets.posy[t] - y + script.nextGaussian()*20,
+                         sim.targets.posz[t] - z + script.nextGaussian()*20);
+            }
+        }
+        sim.update(dt);
+        allocated += allocatedBytes() - bytes;
+    }
+
+    /**FUNCTION TO RETURN HOW MANY BYTES THIS THREAD HAS ALLOCATED SO FAR (HOTSPOT ONLY)**/
+    static long allocatedBytes()
+    {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
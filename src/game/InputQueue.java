@@ -0,0 +1,143 @@
+/**
+ * InputQueue.class
+ *
+ * Ring of key commands handed from the AWT event thread to the update thread without a lock.
+ *
+ * The key handlers offer() a command (a key was pressed or released, and when) and return right away, they never wait
+ * for a tick or a frame. update() drain()s every command at the start of its tick and applies them there, so the camera,
+ * the movement flags and the bombs are only ever touched by the update thread.
+ *
+ * It only works with one thread offering and one thread draining:
+ *
+ *      1. offer()  -- writes the slot at tail, then moves tail on with lazySet(), which makes the slot visible before
+ *                     the new tail to whoever reads tail
+ *      2. drain()  -- reads tail, applies every slot before it, then moves head on the same way, which hands the slots
+ *                     back to offer()
+ *
+ * Each side keeps the last value of the other side's index it read, so it only reads the other thread's index again
+ * when that one says the ring is full (offer()) or empty (drain()). Commands are kept in arrays of ints and longs, so
+ * nothing is allocated per key press. A full ring drops the command and counts it in dropped().
+ *
+ * Metrics: applied(), dropped(), and the mean and worst nanoseconds from the key handler to the command being applied
+ * (meanLatency(), maxLatency()). Nothing is printed, the caller decides what to do with them.
+ **/
+
+package game;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class InputQueue
+{
+    /**KINDS OF COMMANDS**/
+    public static final int PRESS = 0, RELEASE = 1;
+
+    /**WHAT drain() HANDS EVERY COMMAND TO**/
+    public interface Handler
+    {
+        /**Key keyCode was pressed or released (kind)**/
+        void command(int kind, int keyCode);
+    }
+
+    /**Class Member Variables**/
+    private final int[] kinds, keys;
+    private final long[] times;//System.nanoTime() the command was offered at
+    private final int mask;
+
+    //next command to drain and next slot to offer into, they only ever count up
+    private final AtomicLong head = new AtomicLong(), tail = new AtomicLong();
+    private long cachedHead;//offer() only
+    private long cachedTail;//drain() only
+
+    //metrics, dropped is only written by offer(), the rest only by drain()
+    private volatile long dropped, applied, totalLatency, maxLatency;
+
+    /**CONSTRUCTOR, capacity IS ROUNDED UP TO A POWER OF TWO**/
+    public InputQueue(int capacity)
+    {
+        if(capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("capacity out of range: " + capacity);
+        int size = Integer.highestOneBit(capacity);
+        if(size < capacity)
+            size <<= 1;
+        kinds = new int[size];
+        keys = new int[size];
+        times = new long[size];
+        mask = size - 1;
+    }
+
+    /**PRODUCER: ADD A COMMAND, RETURNS FALSE (AND DROPS IT) IF THE RING IS FULL**/
+    public boolean offer(int kind, int keyCode, long time)
+    {
+        long t = tail.get();
+        if(t - cachedHead > mask)
+        {
+            //looks full, see how far drain() has got
+            cachedHead = head.get();
+            if(t - cachedHead > mask)
+            {
+                dropped++;
+                return false;
+            }
+        }
+        int i = (int)t & mask;
+        kinds[i] = kind;
+        keys[i] = keyCode;
+        times[i] = time;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**CONSUMER: APPLY EVERY COMMAND OFFERED SO FAR IN ORDER, RETURNS HOW MANY THERE WERE**/
+    public int drain(Handler handler)
+    {
+        long h = head.get();
+        if(h == cachedTail)
+        {
+            //looks empty, see whether offer() added any
+            cachedTail = tail.get();
+            if(h == cachedTail)
+                return 0;
+        }
+        long end = cachedTail;
+        long total = 0, max = maxLatency;
+        for(; h < end; h++)
+        {
+            int i = (int)h & mask;
+            handler.command(kinds[i], keys[i]);
+            long latency = System.nanoTime() - times[i];
+            total += latency;
+            if(latency > max)
+                max = latency;
+        }
+        int n = (int)(end - head.get());
+        head.lazySet(end);
+        applied += n;
+        totalLatency += total;
+        maxLatency = max;
+        return n;
+    }
+
+    /**GETTERS FOR THE METRICS**/
+    public long applied()
+    {
+        return applied;
+    }
+
+    public long dropped()
+    {
+        return dropped;
+    }
+
+    /**Mean nanoseconds from offer() to the command being applied**/
+    public double meanLatency()
+    {
+        long n = applied;
+        return n == 0 ? 0 : totalLatency/(double)n;
+    }
+
+    /**Worst nanoseconds from offer() to the command being applied**/
+    public long maxLatency()
+    {
+        return maxLatency;
+    }
+}
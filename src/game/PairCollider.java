@@ -0,0 +1,172 @@
+package game;
+
+import java.util.*;
+import spatial.SweepAndPrune;
+
+/**
+ * Class that finds bomb-target hits with a sweep and prune broad phase kept from tick to tick, instead of rebuilding
+ * an index and running a query per bomb.
+ *
+ * Every target is a point box and every bomb is the box around the path it moved this tick (prevx.. to posx..) grown
+ * by the hit distance, so every target a bomb could have touched on the way is in a pair with it. Targets barely move
+ * between ticks, so keeping the boxes' sorted order up to date is close to linear.
+ *
+ * collide() does:
+ *
+ *      1. Adds boxes for new bombs and targets and moves the others (every bomb and target keeps the handle of its box
+ *         in its tag)
+ *      2. Commits the sweep and prune, which keeps the set of overlapping bomb-target pairs
+ *      3. Goes through the pairs twice: once to find where every bomb first touches a target, then to hit that
+ *         target and every other one in reach of that point, same as BatchCollider
+ *
+ * It has to be the RemovalListener of both stores, that is how it drops the box of a bomb or target that is removed.
+ */
+public class PairCollider implements EntityStore.RemovalListener
+{
+    /**Class Member Variables**/
+    static final int TARGETS = 0, BOMBS = 1;
+
+    double hitSquareDistance;
+    double hitDistance;
+
+    SweepAndPrune sweepAndPrune = new SweepAndPrune();
+
+    //stores of the current collide() call
+    private EntityStore bombs, targets;
+
+    //for every handle: whether it has a box, its group and where its bomb or target is in its store this tick
+    private boolean[] used = new boolean[0];
+    private int[] group = new int[0];
+    private int[] slot = new int[0];
+
+    //ticks collide() has run, to tell this tick's times of impact from older ones
+    private int tick;
+
+    //earliest time of impact of every bomb handle this tick, the handle of the target it is with, and which tick it is for
+    private double[] firstTime = new double[0];
+    private int[] firstTarget = new int[0];
+    private int[] firstTick = new int[0];
+
+    //pair passes
+    private FirstTouch firstTouch = new FirstTouch();
+    private Hit hit = new Hit();
+
+    /**CONSTRUCTOR**/
+    public PairCollider(double hitSquareDistance){
+        this.hitSquareDistance = hitSquareDistance;
+        hitDistance = Math.sqrt(hitSquareDistance);
+    }
+
+    /**FUNCTION TO KILL EVERY BOMB THAT RAN INTO A TARGET THIS TICK AND EVERY TARGET IT HIT**/
+    /**Returns how many bomb-target hits there were.**/
+    public int collide(EntityStore bombs, EntityStore targets){
+        this.bombs = bombs;
+        this.targets = targets;
+        tick++;
+
+        //boxes for this tick
+        for(int i = 0; i < targets.count; i++){
+            double x = targets.posx[i], y = targets.posy[i], z = targets.posz[i];
+            place(targets, i, TARGETS, x, y, z, x, y, z);
+        }
+        for(int i = 0; i < bombs.count; i++){
+            double prevx = bombs.prevx[i], prevy = bombs.prevy[i], prevz = bombs.prevz[i];
+            double posx = bombs.posx[i], posy = bombs.posy[i], posz = bombs.posz[i];
+            place(bombs, i, BOMBS, Math.min(prevx, posx) - hitDistance, Math.min(prevy, posy) - hitDistance, Math.min(prevz, posz) - hitDistance,
+                                   Math.max(prevx, posx) + hitDistance, Math.max(prevy, posy) + hitDistance, Math.max(prevz, posz) + hitDistance);
+        }
+
+        sweepAndPrune.commit(null);
+
+        //where every bomb first touches a target, then everything in reach of that point
+        sweepAndPrune.pairs(firstTouch);
+        hit.count = 0;
+        sweepAndPrune.pairs(hit);
+        this.bombs = null;
+        this.targets = null;
+        return hit.count;
+    }
+
+    /**FUNCTION TO ADD OR MOVE THE BOX OF BOMB OR TARGET i OF A STORE**/
+    private void place(EntityStore store, int i, int g, double minX, double minY, double minZ, double maxX, double maxY, double maxZ){
+        int h = store.tag[i];
+        if(h < 0){
+            h = sweepAndPrune.add(g, minX, minY, minZ, maxX, maxY, maxZ);
+            store.tag[i] = h;
+            if(h >= used.length){
+                int capacity = Math.max(16, 2*h);
+                used = Arrays.copyOf(used, capacity);
+                group = Arrays.copyOf(group, capacity);
+                slot = Arrays.copyOf(slot, capacity);
+                firstTime = Arrays.copyOf(firstTime, capacity);
+                firstTarget = Arrays.copyOf(firstTarget, capacity);
+                firstTick = Arrays.copyOf(firstTick, capacity);
+            }
+            used[h] = true;
+            group[h] = g;
+        }
+        else{
+            sweepAndPrune.update(h, minX, minY, minZ, maxX, maxY, maxZ);
+        }
+        slot[h] = i;
+    }
+
+    /**FUNCTION TO DROP THE BOX OF A BOMB OR TARGET THAT WAS REMOVED FROM ITS STORE**/
+    public void removed(EntityStore store, int i, int h){
+        if(h >= 0 && used[h]){
+            sweepAndPrune.remove(h);
+            used[h] = false;
+        }
+    }
+
+    /**FUNCTION TO RETURN WHEN BOMB b FIRST TOUCHES TARGET t ON ITS PATH, OR -1 IF IT DOES NOT**/
+    private double timeOfImpact(int b, int t){
+        return spatial.SweepHits.timeOfImpact(bombs.prevx[b] - targets.posx[t], bombs.prevy[b] - targets.posy[t], bombs.prevz[b] - targets.posz[t],
+                                              bombs.posx[b] - bombs.prevx[b], bombs.posy[b] - bombs.prevy[b], bombs.posz[b] - bombs.prevz[b], hitSquareDistance);
+    }
+
+    /**FIRST PASS, KEEPS THE EARLIEST TIME OF IMPACT OF EVERY BOMB AND THE TARGET IT IS WITH**/
+    private class FirstTouch implements SweepAndPrune.PairVisitor{
+        public void visit(int h1, int h2){
+            int bomb = group[h1] == BOMBS ? h1 : h2;
+            int target = bomb == h1 ? h2 : h1;
+            double t = timeOfImpact(slot[bomb], slot[target]);
+            if(t >= 0 && (firstTick[bomb] != tick || t < firstTime[bomb])){
+                firstTime[bomb] = t;
+                firstTarget[bomb] = target;
+                firstTick[bomb] = tick;
+            }
+        }
+    }
+
+    /**SECOND PASS, HITS EVERY TARGET IN REACH OF WHERE ITS BOMB WENT OFF**/
+    private class Hit implements SweepAndPrune.PairVisitor{
+        int count;
+
+        public void visit(int h1, int h2){
+            int bomb = group[h1] == BOMBS ? h1 : h2;
+            int target = bomb == h1 ? h2 : h1;
+            if(firstTick[bomb] != tick){
+                return;
+            }
+            int b = slot[bomb];
+            int t = slot[target];
+
+            //the bomb goes off where it first touches a target
+            double time = firstTime[bomb];
+            double x = bombs.prevx[b] + time*(bombs.posx[b] - bombs.prevx[b]);
+            double y = bombs.prevy[b] + time*(bombs.posy[b] - bombs.prevy[b]);
+            double z = bombs.prevz[b] + time*(bombs.posz[b] - bombs.prevz[b]);
+
+            //the first target is hit even if rounding puts it just out of reach
+            double dx = x - targets.posx[t];
+            double dy = y - targets.posy[t];
+            double dz = z - targets.posz[t];
+            if(target == firstTarget[bomb] || dx*dx + dy*dy + dz*dz <= hitSquareDistance){
+                bombs.dead[b] = true;
+                targets.dead[t] = true;
+                count++;
+            }
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/**
+ * Simulation.class
+ *
+ * Everything the game does in a tick, without a window: the targets and bombs in the box, the spatial index or sweep
+ * and prune that finds what every bomb hits, and moving everything. Game draws it and feeds it key presses,
+ * HeadlessRunner drives it on a fixed timestep with scripted bombs.
+ *
+ * - Every random number comes from one seeded Random, so the same seed, timestep and bombs give the same game
+ * - update(time) moves everything time nanoseconds on and adds up how long every phase of the tick took
+ * - fire() shoots a bomb the same way the space bar does
+ * - targets and bombs are each kept in an EntityStore, parallel arrays of positions, velocities, sizes and colours
+ * - they are moved and bounced with EntityStore.move(), with the Vector API kernel when jdk.incubator.vector is there
+ *   and the blocked loops when it is not, -Dgame.kernel=blocked or scalar (the plain per-step methods) picks one
+ * - new bombs and targets reuse the slots of dead ones in their store, so once it is under way a game allocates nothing
+ * - -Dgame.layout=blocked or veb lays the kd tree's nodes out in blocked subtree or van Emde Boas order (heap by default)
+ * - with respawnAt set, a wave of new targets comes in whenever the removal pass leaves fewer than that
+ **/
+
+package game;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import spatial.KD_Tree;
+import spatial.SpatialHashGrid;
+import spatial.SpatialIndex3D;
+
+public class Simulation
+{
+    /**BOX SETUP**/
+    double theta;
+    double boxWidth, boxHeight, boxLength;//box size
+    double beginZ, endZ;//shift box on z axis
+    double targetX, targetY, targetZ;
+    
+    /**BOMBS AND TARGETS**/
+    EntityStore bombs;
+    EntityStore targets;
+    int targetAmount;
+    int respawnAt = 0;//fewer targets than this left after a tick brings a wave back up to targetAmount, 0 never does
+    long respawned;//targets brought in by waves
+    double bombSize = 5.0, targetSize = 5.0;
+    String kernel = System.getProperty("game.kernel", "vector");//"vector", "blocked" or "scalar" for the plain methods
+    boolean scalarKernel = kernel.equals("scalar");
+    Random random;//every random number of the game comes from here
+    ForkJoinPool buildPool = ForkJoinPool.commonPool();//rebuilds split subtrees across cores
+    double hitSquareDistance = 200;//a bomb hits a target closer than sqrt of this
+    String broadPhase;//"kdtree", "grid" for the uniform grid or "sap" for sweep and prune
+    TargetIndex targetIndex;
+    BatchCollider collider = new BatchCollider(buildPool, hitSquareDistance);//checks all bombs against the index in parallel
+    PairCollider pairCollider;//keeps bomb-target pairs between ticks
+    
+    /**TICK COUNTERS**/
+    //ticks, hits and nanoseconds spent in every phase since the last resetCounters()
+    long ticks, hits;
+    long indexTime, bombTime, collideTime, targetTime;
+    
+    /**SIMULATION CONSTRUCTOR**/
+    public Simulation(long seed, int targetAmount, String broadPhase) {
+        //BOMBS AND TARGETS SETUP
+        //things are put back half their size inside a wall they hit
+        bombs = new EntityStore(16, bombSize/2);
+        targets = new EntityStore(targetAmount, targetSize/2);
+        if(kernel.equals("vector")) {
+            //falls back to the blocked loops without the module
+            bombs.useVectorKernel();
+            targets.useVectorKernel();
+        }
+        random = new Random(seed);
+        theta = 0;
+        
+        //BROAD PHASE SETUP
+        this.broadPhase = broadPhase;
+        //the broad phase is told about every bomb and target that is removed
+        if(broadPhase.equals("sap")) {
+            pairCollider = new PairCollider(hitSquareDistance);
+            bombs.listener = pairCollider;
+            targets.listener = pairCollider;
+        }
+        else {
+            targetIndex = new TargetIndex(newSpatialIndex(broadPhase));
+            targets.listener = targetIndex;
+        }
+        
+        //BOX SETUP
+        boxWidth = 500;
+        boxHeight = 300;
+        boxLength = 500;        
+        beginZ = boxLength - boxLength - 5000;
+        endZ = beginZ - boxLength;        
+        targetX = boxWidth - 20;
+        targetY = boxHeight - 20;
+        
+        //CREATE TARGETS
+        this.targetAmount = targetAmount;
+        for(int i = 0; i < targetAmount; i++){
+            spawnTarget();
+        }
+    }
+    
+    /**FUNCTION TO ADD A TARGET AT A RANDOM PLACE IN THE BOX, RETURNS ITS INDEX**/
+    public int spawnTarget() {
+        //positions
+        double posX = random.nextDouble()*(targetX + targetX )-targetX;
+        double posY = random.nextDouble()*(targetY+targetY)-targetY;
+        double posZ= ( random.nextDouble()*(beginZ - endZ) + endZ);           
+        //velocities
+        double velx = random.nextDouble()*0.1;
+        double vely = random.nextDouble()*0.1;
+        double velz = random.nextDouble()*0.1;
+        //add to store, in the slot of one that died if there is one
+        return targets.add(posX,posY,posZ, velx , vely, velz, targetSize, random.nextFloat(), random.nextFloat(), random.nextFloat());
+    }
+    
+    /**FUNCTION TO MAKE THE SPATIAL INDEX THE TARGETS GO IN ("kdtree" OR "grid")**/
+    SpatialIndex3D newSpatialIndex(String name) {
+        if(name.equals("grid")) {
+            //cubes about as wide as the reach of a bomb, so a query only looks at the cubes right around it
+            return new SpatialHashGrid(2*Math.sqrt(hitSquareDistance));
+        }
+        if(name.equals("kdtree")) {
+            KD_Tree tree = new KD_Tree(buildPool, KD_Tree.SEQUENTIAL_CUTOFF);
+            String layout = System.getProperty("game.layout", "heap");
+            if(layout.equals("blocked")) {
+                tree.setLayout(KD_Tree.LAYOUT_BLOCKED);
+            }
+            else if(layout.equals("veb")) {
+                tree.setLayout(KD_Tree.LAYOUT_VEB);
+            }
+            else if(!layout.equals("heap")) {
+                throw new IllegalArgumentException("unknown kd tree layout: " + layout);
+            }
+            return tree;
+        }
+        throw new IllegalArgumentException("unknown spatial index: " + name);
+    }
+    
+    /**SIMULATION UPDATE FUNCTION, MOVES EVERYTHING time NANOSECONDS ON**/
+    public void update (long time) {
+        long start = System.nanoTime();
+        theta += time/10000000000.0;
+        
+        //SPATIAL INDEX
+        //the index is kept between ticks and moved to where the targets moved to,
+        //the tree is only rebuilt when it has gotten too loose or targets were added
+        //(sweep and prune keeps its own boxes and brings them up to date when it collides)
+        if(targetIndex != null) {
+            targetIndex.sync(targets);
+        }
+        long indexed = System.nanoTime();
+        
+        /**BOMBS**/
+        //shrink, remember where they started, bounce and move
+        bombs.shrink(time);
+        if(scalarKernel) {
+            bombs.savePositions();
+            bombs.bounce(boxWidth, boxHeight, beginZ, endZ);
+            bombs.integrate(time, 500000000.0);
+        }
+        else {
+            bombs.move(time, 500000000.0, true, boxWidth, boxHeight, beginZ, endZ);
+        }
+        long moved = System.nanoTime();
+        
+        /**CHECK COLLISIONS**/
+        //all bombs are swept along this tick's path at once, in parallel, and marked dead together
+        if(pairCollider != null) {
+            hits += pairCollider.collide(bombs, targets);
+        }
+        else {
+            hits += collider.collide(bombs, targetIndex);
+        }
+        
+        //remove bombs that are dead
+        bombs.removeDead();
+        long collided = System.nanoTime();
+        
+        /**TARGETS**/
+        //remember where they started, move and bounce
+        if(scalarKernel) {
+            targets.savePositions();
+            targets.integrate(time, 2500000.0);
+            targets.bounce(boxWidth, boxHeight, beginZ, endZ);
+        }
+        else {
+            targets.move(time, 2500000.0, false, boxWidth, boxHeight, beginZ, endZ);
+        }
+        
+        //remove targets that were hit, and send in a new wave if too few are left
+        targets.removeDead();
+        if(targets.count < respawnAt) {
+            while(targets.count < targetAmount) {
+                spawnTarget();
+                respawned++;
+            }
+        }
+        long end = System.nanoTime();
+        
+        /**COUNTERS**/
+        ticks++;
+        indexTime += indexed - start;
+        bombTime += moved - indexed;
+        collideTime += collided - moved;
+        targetTime += end - collided;
+    }
+    
+    /**FUNCTION TO SHOOT A BOMB FROM (x, y, z) ALONG (dx, dy, dz), LIKE THE SPACE BAR DOES FROM THE CAMERA**/
+    public int fire(double x, double y, double z, double dx, double dy, double dz) {
+        //create unit vector
+        double m = Math.sqrt(dx*dx + dy*dy + dz*dz);
+        dx /= m;
+        dy /= m;
+        dz /= m;            
+        //calculate position to place bomb
+        double posx = x + dx*30;
+        double posy = y + dy*30;
+        double posz = z + dz*30;            
+        //velocity
+        double velx = dx*300;
+        double vely = dy*300;
+        double velz = dz*300;
+        //add, in the slot of one that is gone if there is one
+        return bombs.add(posx, posy, posz, velx, vely, velz, bombSize, random.nextFloat(), random.nextFloat(), random.nextFloat());
+    }
+    
+    /**FUNCTION TO START THE TICK COUNTERS OVER, E.G. AFTER WARMING UP**/
+    public void resetCounters() {
+        ticks = 0;
+        hits = 0;
+        respawned = 0;
+        indexTime = 0;
+        bombTime = 0;
+        collideTime = 0;
+        targetTime = 0;
+    }
+    
+    /**FUNCTION TO RETURN WHICH KERNEL MOVES THINGS, "blocked" WHEN "vector" WAS ASKED FOR BUT COULD NOT BE LOADED**/
+    public String kernel() {
+        if(scalarKernel)
+            return "scalar";
+        return targets.mover == EntityStore.VECTOR ? "vector" : "blocked";
+    }
+    
+    /**FUNCTION TO HASH WHERE EVERY BOMB AND TARGET IS, TWO RUNS THAT DID THE SAME THING GIVE THE SAME NUMBER**/
+    public long checksum() {
+        long h = 17;
+        for(int i = 0; i < targets.count; i++) {
+            h = mix(h, targets.posx[i], targets.posy[i], targets.posz[i]);
+        }
+        for(int i = 0; i < bombs.count; i++) {
+            h = mix(h, bombs.posx[i], bombs.posy[i], bombs.posz[i]);
+        }
+        return h;
+    }
+    
+    /**FUNCTION TO FOLD A POSITION INTO A HASH**/
+    private static long mix(long h, double x, double y, double z) {
+        h = h*31 + Double.doubleToLongBits(x);
+        h = h*31 + Double.doubleToLongBits(y);
+        h = h*31 + Double.doubleToLongBits(z);
+        return h;
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Snapshot.class
+ *
+ * Contains:
+ *
+ *  Bodies.class
+ *
+ *  Buffer.class
+ *
+ * Copy of everything display() draws, as it was at the end of one tick: where every target and bomb was at the start
+ * and at the end of the tick, its size and colour, the spin of the targets and the camera.
+ *
+ * The update thread fills one in after every tick and publishes it through a Buffer. display() takes the newest one
+ * from the Buffer and draws only from it, so neither thread ever waits for the other or sees a tick half done.
+ **/
+
+package game;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class Snapshot
+{
+    /**Class Member Variables**/
+    long tick;//which tick this is, newer snapshots have bigger ones
+    long time;//wall time the game was at, for FixedStepLoop.alpha()
+    double theta;
+    Bodies targets = new Bodies();
+    Bodies bombs = new Bodies();
+    double eyeX, eyeY, eyeZ, centerX, centerY, centerZ, upX, upY, upZ;
+
+    /**FUNCTION TO COPY THE TARGETS AND BOMBS OF THE SIMULATION**/
+    public void copy(Simulation sim)
+    {
+        theta = sim.theta;
+        targets.copy(sim.targets);
+        bombs.copy(sim.bombs);
+    }
+
+    /**FUNCTION TO COPY WHERE THE CAMERA IS AND WHERE IT LOOKS**/
+    public void setCamera(double eyeX, double eyeY, double eyeZ, double centerX, double centerY, double centerZ, double upX, double upY, double upZ)
+    {
+        this.eyeX = eyeX;
+        this.eyeY = eyeY;
+        this.eyeZ = eyeZ;
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.centerZ = centerZ;
+        this.upX = upX;
+        this.upY = upY;
+        this.upZ = upZ;
+    }
+
+    /**WHAT IS DRAWN OF A LIST OF TARGETS OR BOMBS, ONE ENTRY PER BODY IN PARALLEL ARRAYS**/
+    public static class Bodies
+    {
+        int count;
+        double[] prevx = new double[0], prevy = new double[0], prevz = new double[0];
+        double[] posx = new double[0], posy = new double[0], posz = new double[0];
+        double[] size = new double[0];
+        float[] color_r = new float[0], color_g = new float[0], color_b = new float[0];
+
+        /**FUNCTION TO MAKE ROOM FOR n BODIES, ONLY GROWS SO A SNAPSHOT STOPS ALLOCATING ONCE THE GAME IS UNDER WAY**/
+        void ensure(int n)
+        {
+            if(n <= posx.length)
+                return;
+            int capacity = Math.max(n, 2*posx.length);
+            prevx = Arrays.copyOf(prevx, capacity);
+            prevy = Arrays.copyOf(prevy, capacity);
+            prevz = Arrays.copyOf(prevz, capacity);
+            posx = Arrays.copyOf(posx, capacity);
+            posy = Arrays.copyOf(posy, capacity);
+            posz = Arrays.copyOf(posz, capacity);
+            size = Arrays.copyOf(size, capacity);
+            color_r = Arrays.copyOf(color_r, capacity);
+            color_g = Arrays.copyOf(color_g, capacity);
+            color_b = Arrays.copyOf(color_b, capacity);
+        }
+
+        /**FUNCTION TO COPY WHAT IS DRAWN OF EVERY ENTITY OF A STORE**/
+        void copy(EntityStore store)
+        {
+            int n = store.count;
+            ensure(n);
+            System.arraycopy(store.prevx, 0, prevx, 0, n);
+            System.arraycopy(store.prevy, 0, prevy, 0, n);
+            System.arraycopy(store.prevz, 0, prevz, 0, n);
+            System.arraycopy(store.posx, 0, posx, 0, n);
+            System.arraycopy(store.posy, 0, posy, 0, n);
+            System.arraycopy(store.posz, 0, posz, 0, n);
+            System.arraycopy(store.size, 0, size, 0, n);
+            System.arraycopy(store.color_r, 0, color_r, 0, n);
+            System.arraycopy(store.color_g, 0, color_g, 0, n);
+            System.arraycopy(store.color_b, 0, color_b, 0, n);
+            count = n;
+        }
+    }
+
+    /**
+     * Three snapshots handed between one writer and one reader without a lock.
+     *
+     * The writer always owns one (back()), the reader always owns one (front()) and the third is the newest one
+     * published. publish() swaps the writer's one with the published one and front() swaps the reader's one with it if
+     * it is newer, both with one atomic getAndSet, so the snapshot being drawn is never the one being filled in.
+     */
+    public static class Buffer
+    {
+        private Snapshot back = new Snapshot();
+        private Snapshot front = new Snapshot();
+        private final AtomicReference<Snapshot> ready = new AtomicReference<Snapshot>(new Snapshot());
+        private long published;
+
+        /**WRITER: THE SNAPSHOT TO FILL IN NEXT**/
+        public Snapshot back()
+        {
+            return back;
+        }
+
+        /**WRITER: MAKE THE FILLED IN SNAPSHOT THE NEWEST ONE AND TAKE BACK AN OLD ONE TO FILL IN NEXT**/
+        public void publish()
+        {
+            back.tick = ++published;
+            back = ready.getAndSet(back);
+        }
+
+        /**READER: THE NEWEST PUBLISHED SNAPSHOT, IT STAYS THE SAME UNTIL THE NEXT CALL**/
+        public Snapshot front()
+        {
+            if(ready.get().tick > front.tick)
+                front = ready.getAndSet(front);
+            return front;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package game;
+
+import java.util.*;
+import spatial.SpatialIndex3D;
+
+/**
+ * Class that keeps a SpatialIndex3D in step with the game's targets.
+ *
+ * The index only knows ids and coordinate arrays, so this class hands every target an id, which the target keeps in
+ * its tag in the EntityStore, and copies the targets' positions into x, y and z every tick. Removing targets moves the
+ * others around the store, so slots[id] is where the target with an id is this tick. Whatever the index finds comes
+ * back as ids and is turned back into targets with slot(id).
+ *
+ * It is the targets' RemovalListener, so a target that dies is taken out of the index when it is removed from the store.
+ *
+ * sync() does:
+ *
+ *      1. Builds the index the first time, or when targets were added or it needsRebuild()
+ *      2. Otherwise moves the targets that are left with update()
+ */
+public class TargetIndex implements EntityStore.RemovalListener
+{
+    /**Class Member Variables**/
+    SpatialIndex3D index;
+    EntityStore targets;
+
+    //where the target with every id is in the store this tick, -1 once it died, and its position
+    int[] slots = new int[0];
+    double[] x = new double[0], y = new double[0], z = new double[0];
+    int count;
+
+    //whether an id is still in the index
+    private boolean[] live = new boolean[0];
+
+    /**CONSTRUCTOR**/
+    public TargetIndex(SpatialIndex3D index){
+        this.index = index;
+    }
+
+    /**FUNCTION TO BRING THE INDEX UP TO DATE WITH WHERE THE TARGETS ARE NOW**/
+    public void sync(EntityStore store){
+        if(store == targets && count > 0 && index.size() == count){
+            //find every id, new targets do not have one yet
+            Arrays.fill(slots, 0, count, -1);
+            for(int i = 0; i < store.count; i++){
+                int id = store.tag[i];
+                if(id >= 0){
+                    slots[id] = i;
+                }
+            }
+
+            //same targets as last tick, just moved
+            if(index.liveCount() == store.count){
+                copyPositions();
+                index.update(x, y, z);
+                if(!index.needsRebuild()){
+                    return;
+                }
+            }
+        }
+
+        //hand out new ids and build
+        targets = store;
+        count = store.count;
+        if(slots.length < count){
+            slots = new int[count];
+            live = new boolean[count];
+            x = new double[count];
+            y = new double[count];
+            z = new double[count];
+        }
+        for(int id = 0; id < count; id++){
+            store.tag[id] = id;
+            slots[id] = id;
+            live[id] = true;
+        }
+        copyPositions();
+        index.build(x, y, z, count);
+    }
+
+    /**FUNCTION TO TAKE A TARGET THAT DIED OUT OF THE INDEX**/
+    public void removed(EntityStore store, int i, int id){
+        if(store == targets && id >= 0 && id < count && live[id]){
+            index.remove(id);
+            live[id] = false;
+        }
+    }
+
+    /**FUNCTION TO COPY EVERY LIVE TARGET'S POSITION INTO x, y AND z**/
+    private void copyPositions(){
+        for(int id = 0; id < count; id++){
+            int i = slots[id];
+            if(i >= 0){
+                x[id] = targets.posx[i];
+                y[id] = targets.posy[i];
+                z[id] = targets.posz[i];
+            }
+        }
+    }
+
+    /**FUNCTION TO RETURN WHERE THE TARGET WITH A GIVEN ID IS IN THE STORE**/
+    public int slot(int id){
+        return slots[id];
+    }
+
+    /**FUNCTION TO RETURN THE TARGETS THE INDEX WAS LAST SYNCED WITH**/
+    public EntityStore targets(){
+        return targets;
+    }
+
+    /**FUNCTION TO RETURN THE INDEX THE TARGETS ARE IN**/
+    public SpatialIndex3D index(){
+        return index;
+    }
+}
@@ -1,141 +1,284 @@
 /**
  * @author georbeca
  *
- * Class which implements a Queue using a Linked List.
- * 
+ * Class which implements a Queue using a circular array.
+ *
  * Note that encapsulation is used so a user can't break the structure.
- * 
+ *
  * Note that generics are used.
- * 
- * enqueue(T data), dequeue(), doubleSize(), and halfSize() are the functions
+ *
+ * The array is always a power of two long, so going circular is index & mask instead of a compare and jump.
+ *
+ * Growing and shrinking:
+ *
+ *      1. enqueue doubles the array when it is full
+ *      2. dequeue halves it once size drops to a shrinkRatio of it (a quarter by default, 0 never shrinks), after the
+ *         element has been read. A ratio of at least 4 leaves the halved array at most half full, so it takes twice as
+ *         many elements again before it grows back: a queue going up and down around one size does not copy every time
+ *      3. it never shrinks below the capacity hint it was made with, so a queue that is refilled over and over
+ *         (breadth first traversals) keeps its array
+ *
+ * enqueue(T data), dequeue(), peek(), enqueueAll(), drainTo(), iterator(), doubleSize(), and halfSize() are the functions
  */
 
 package queue;
 
-public class ArrayQueue<T>
+import java.util.*;
+
+public class ArrayQueue<T> implements Iterable<T>
 {
     /**Class member variables**/
     private T[] a;
-    private int front, back, size;
-    
-    /**Constructor creates front and back,
-     * and size and array
+    private int mask;
+    private int front, size;
+    private final int minCapacity;//never shrinks below this
+    private final int shrinkRatio;//halves when size <= a.length/shrinkRatio, 0 never halves
+    private int modCount;//changes, for the iterator to notice
+
+    /**Constructor creates an empty queue with the default capacity (16, like java.util.ArrayDeque) and shrink policy**/
+    public ArrayQueue()
+    {
+        this(16, 4);
+    }
+
+    /**Constructor creates an empty queue with room for capacityHint elements, which it never shrinks below**/
+    public ArrayQueue(int capacityHint)
+    {
+        this(capacityHint, 4);
+    }
+
+    /**Constructor creates an empty queue with room for capacityHint elements,
+     * which halves when only a shrinkRatio of it is used (0 never halves)
      **/
     @SuppressWarnings("unchecked")
-    public ArrayQueue()
+    public ArrayQueue(int capacityHint, int shrinkRatio)
     {
-        //Set front back and size
+        if(capacityHint < 0 || capacityHint > 1 << 30)
+            throw new IllegalArgumentException("capacity hint out of range: " + capacityHint);
+        if(shrinkRatio != 0 && shrinkRatio < 4)
+            throw new IllegalArgumentException("shrink ratio has to be 0 or at least 4: " + shrinkRatio);
+        //Set front and size
         front = 0;
-        back  = 0;
         size  = 0;
         //Create array
-        int initialSize  = 1;
-        a = (T[]) new Object[initialSize];
+        minCapacity = powerOfTwo(capacityHint);
+        this.shrinkRatio = shrinkRatio;
+        a = (T[]) new Object[minCapacity];
+        mask = minCapacity - 1;
+    }
+
+    /**Function to round up to a power of two, at least 1**/
+    private static int powerOfTwo(int n)
+    {
+        int p = Integer.highestOneBit(Math.max(n, 1));
+        return p < n ? p << 1 : p;
     }
-    
+
     /**Enqueue function adds one at the back**/
     public void enqueue(T data)
     {
         //Double size of array if full
-        if(size >= a.length)
+        if(size == a.length)
             doubleSize();
-      
-        //Keep going circular
-        if(back == a.length)
-            back = 0;
-        //Add to back
-        a[back++] = data;
-        
+
+        //Add to back, going circular
+        a[(front + size) & mask] = data;
+
         //Only increase the size after you have put something inside
         size++;
+        modCount++;
     }
-    
+
     /**Dequeue function removes one from the front**/
     public T dequeue()
     {
-        //Half size of array if it's only one quarter full
-        if( size <= (a.length/4) )
-            halfSize();
-        
-        //Keep going circular
-        if(front == a.length)
-            front = 0;
-        
+        if(size == 0)
+            throw new NoSuchElementException("queue is empty");
+
+        //Read it and let go of it before anything moves
+        T data = a[front];
+        a[front] = null;
+        front = (front + 1) & mask;
+
         //Minus one from size
         size--;
-        
+        modCount++;
+
+        //Half size of array if it's only a shrinkRatio full
+        if(shrinkRatio != 0 && a.length > minCapacity && size <= a.length/shrinkRatio)
+            halfSize();
+
         //Return what you dequeue
-        return a[front++];
+        return data;
     }
-    
-    /**Function to double the size of the array.
-     * Called from push(T data).
+
+    /**Function to return the front without removing it**/
+    public T peek()
+    {
+        if(size == 0)
+            throw new NoSuchElementException("queue is empty");
+        return a[front];
+    }
+
+    /**Function to enqueue everything in data, in order, growing at most once**/
+    public void enqueueAll(Collection<? extends T> data)
+    {
+        //as a long, so two big sizes can not wrap round to a small one
+        ensureCapacity((long)size + data.size());
+        for(T t : data)
+            enqueue(t);
+    }
+
+    /**Function to enqueue every element of data, in order, growing at most once**/
+    public void enqueueAll(T[] data)
+    {
+        ensureCapacity((long)size + data.length);
+        for(T t : data)
+            enqueue(t);
+    }
+
+    /**Function to dequeue everything into out, front first, returns how many there were**/
+    public int drainTo(Collection<? super T> out)
+    {
+        return drainTo(out, size);
+    }
+
+    /**Function to dequeue up to max elements into out, front first, returns how many it moved.
+     * It only shrinks once, at the end.
      **/
-    @SuppressWarnings("unchecked")
-    private void doubleSize()
+    public int drainTo(Collection<? super T> out, int max)
     {
-        //Create new array that's twice as big as whatever we are using
-        T[] b = (T[]) new Object[a.length*2];        
-        //Copy all data from old array into new one
-        //Note you have to move front each time
-        for(int i = 0; i < size; i++)
+        if(max < 0)
+            throw new IllegalArgumentException("max has to be at least 0: " + max);
+        int n = Math.min(max, size);
+        for(int i = 0; i < n; i++)
         {
-            //Keep going circular
-            if(front == a.length)
-                front = 0;
-            b[i] = a[front++];
+            out.add(a[front]);
+            a[front] = null;
+            front = (front + 1) & mask;
         }
-        
-        //Make old "a" point to the new array and front to the start
-        //and back to the end
-        a = b;
-        front = 0;
-        back = size;
+        size -= n;
+        modCount++;
+
+        //Shrink all the way down in one copy
+        if(shrinkRatio != 0)
+        {
+            int capacity = a.length;
+            while(capacity > minCapacity && size <= capacity/shrinkRatio)
+                capacity /= 2;
+            if(capacity != a.length)
+                resize(capacity);
+        }
+        return n;
+    }
+
+    /**Function to make room for capacity elements without growing again**/
+    public void ensureCapacity(int capacity)
+    {
+        ensureCapacity((long)capacity);
+    }
+
+    /**Function to make room for capacity elements, more than the largest array (2^30) is full like doubleSize()**/
+    private void ensureCapacity(long capacity)
+    {
+        if(capacity > 1 << 30)
+            throw new IllegalStateException("queue is full");
+        if(capacity > a.length)
+            resize(powerOfTwo((int)capacity));
+    }
+
+    /**Function to double the size of the array.
+     * Called from enqueue(T data).
+     **/
+    private void doubleSize()
+    {
+        if(a.length == 1 << 30)
+            throw new IllegalStateException("queue is full");
+        resize(a.length*2);
     }
-    
+
     /**Function to half the size of the array.
-     * Called from push(T data).
+     * Called from dequeue().
      **/
-    @SuppressWarnings("unchecked")
     private void halfSize()
     {
-      //Create new array that's half as big as whatever we are using
-        T[] b = (T[]) new Object[a.length/2];        
-        //Copy all data from old array into new one
-        //Note you have to move front each time
-        for(int i = 0; i < size; i++)
-        {
-          //Keep going circular
-            if(front == a.length)
-                front = 0;
-            b[i] = a[front++];
-        }
-        
+        resize(a.length/2);
+    }
+
+    /**Function to copy the queue into an array of a new (power of two) length,
+     * front first
+     **/
+    @SuppressWarnings("unchecked")
+    private void resize(int capacity)
+    {
+        //Create new array
+        T[] b = (T[]) new Object[capacity];
+        //Copy all data from old array into new one, in at most two pieces
+        int firstPart = Math.min(size, a.length - front);
+        System.arraycopy(a, front, b, 0, firstPart);
+        System.arraycopy(a, 0, b, firstPart, size - firstPart);
+
         //Make old "a" point to the new array and front to the start
-        //and back to the end
         a = b;
+        mask = capacity - 1;
         front = 0;
-        back = size;
+        modCount++;
     }
-    
-    /**Function to make the array not just keep expanding when testing**/
-    @SuppressWarnings("unchecked")
+
+    /**Function to make the array not just keep expanding when testing,
+     * it goes back to the smallest power of two that holds what is in it (or the hint)
+     **/
     public void resetArraySize()
     {
-        front = 0;
-        back = size;
-        T[] b = (T[]) new Object[100];
-        a = b;
+        int capacity = Math.max(minCapacity, powerOfTwo(size));
+        if(capacity != a.length)
+            resize(capacity);
+    }
+
+    /**Function to go through the queue front to back without removing anything**/
+    public Iterator<T> iterator()
+    {
+        return new Iterator<T>()
+        {
+            int i = 0;
+            final int expected = modCount;
+
+            public boolean hasNext()
+            {
+                return i < size;
+            }
+
+            public T next()
+            {
+                if(modCount != expected)
+                    throw new ConcurrentModificationException();
+                if(i >= size)
+                    throw new NoSuchElementException();
+                return a[(front + i++) & mask];
+            }
+        };
     }
-    
+
     /**Function to print the queue**/
     public void print()
     {
-        for(int i = front; i < back; i++)
-            System.out.print(a[i] + ", ");
+        for(int i = 0; i < size; i++)
+            System.out.print(a[(front + i) & mask] + ", ");
         System.out.println();
     }
-    
+
+    /**Function to return how many elements are in the queue**/
+    public int size()
+    {
+        return size;
+    }
+
+    /**Function to return how many elements fit before the array doubles**/
+    public int capacity()
+    {
+        return a.length;
+    }
+
     /**Function to return whether queue is empty**/
     public boolean isEmpty()
     {
@@ -0,0 +1,112 @@
+/**
+ * Class which implements a Queue of ints using a circular array.
+ *
+ * Same as ArrayQueue, but the ints are kept as ints, so nothing is boxed, and the array is never shrunk: clear()
+ * empties the queue and keeps the array, so a queue that is reused for traversal after traversal stops allocating once
+ * it has been as long as the longest one needed.
+ *
+ * The array is always a power of two long, so going circular is index & mask.
+ *
+ * enqueue(int data), dequeue(), peek(), clear(), and doubleSize() are the functions
+ */
+
+package queue;
+
+import java.util.*;
+
+public class IntArrayQueue
+{
+    /**Class member variables**/
+    private int[] a;
+    private int mask;
+    private int front, size;
+
+    /**Constructor creates an empty queue with room for 16 ints**/
+    public IntArrayQueue()
+    {
+        this(16);
+    }
+
+    /**Constructor creates an empty queue with room for capacityHint ints**/
+    public IntArrayQueue(int capacityHint)
+    {
+        if(capacityHint < 0 || capacityHint > 1 << 30)
+            throw new IllegalArgumentException("capacity hint out of range: " + capacityHint);
+        int capacity = Integer.highestOneBit(Math.max(capacityHint, 1));
+        if(capacity < capacityHint)
+            capacity <<= 1;
+        a = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**Enqueue function adds one at the back**/
+    public void enqueue(int data)
+    {
+        //Double size of array if full
+        if(size == a.length)
+            doubleSize();
+        a[(front + size) & mask] = data;
+        size++;
+    }
+
+    /**Dequeue function removes one from the front**/
+    public int dequeue()
+    {
+        if(size == 0)
+            throw new NoSuchElementException("queue is empty");
+        int data = a[front];
+        front = (front + 1) & mask;
+        size--;
+        return data;
+    }
+
+    /**Function to return the front without removing it**/
+    public int peek()
+    {
+        if(size == 0)
+            throw new NoSuchElementException("queue is empty");
+        return a[front];
+    }
+
+    /**Function to empty the queue, the array is kept**/
+    public void clear()
+    {
+        front = 0;
+        size = 0;
+    }
+
+    /**Function to double the size of the array.
+     * Called from enqueue(int data).
+     **/
+    private void doubleSize()
+    {
+        if(a.length == 1 << 30)
+            throw new IllegalStateException("queue is full");
+        int[] b = new int[a.length*2];
+        //Copy front to the end of the array, then whatever wrapped around
+        int firstPart = Math.min(size, a.length - front);
+        System.arraycopy(a, front, b, 0, firstPart);
+        System.arraycopy(a, 0, b, firstPart, size - firstPart);
+        a = b;
+        mask = b.length - 1;
+        front = 0;
+    }
+
+    /**Function to return how many ints are in the queue**/
+    public int size()
+    {
+        return size;
+    }
+
+    /**Function to return how many ints fit before the array doubles**/
+    public int capacity()
+    {
+        return a.length;
+    }
+
+    /**Function to return whether queue is empty**/
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Class which implements a Stack of ints using an array.
+ *
+ * The ints are kept as ints, so nothing is boxed, and the array is never shrunk: clear() empties the stack and keeps
+ * the array, so a stack that is reused for traversal after traversal stops allocating once it has been as deep as the
+ * deepest one needed.
+ *
+ * push(int data), pop(), peek(), clear(), and doubleSize() are the functions
+ */
+
+package queue;
+
+import java.util.*;
+
+public class IntArrayStack
+{
+    /**Class member variables**/
+    private int[] a;
+    private int top;
+
+    /**Constructor creates an empty stack with room for 16 ints**/
+    public IntArrayStack()
+    {
+        this(16);
+    }
+
+    /**Constructor creates an empty stack with room for capacityHint ints**/
+    public IntArrayStack(int capacityHint)
+    {
+        if(capacityHint < 0)
+            throw new IllegalArgumentException("capacity hint out of range: " + capacityHint);
+        a = new int[Math.max(capacityHint, 1)];
+    }
+
+    /**Push function adds one on top**/
+    public void push(int data)
+    {
+        //Double size of array if full
+        if(top == a.length)
+            doubleSize();
+        a[top++] = data;
+    }
+
+    /**Pop function removes the one on top**/
+    public int pop()
+    {
+        if(top == 0)
+            throw new NoSuchElementException("stack is empty");
+        return a[--top];
+    }
+
+    /**Function to return the top without removing it**/
+    public int peek()
+    {
+        if(top == 0)
+            throw new NoSuchElementException("stack is empty");
+        return a[top - 1];
+    }
+
+    /**Function to empty the stack, the array is kept**/
+    public void clear()
+    {
+        top = 0;
+    }
+
+    /**Function to double the size of the array.
+     * Called from push(int data).
+     **/
+    private void doubleSize()
+    {
+        if(a.length > Integer.MAX_VALUE/2 - 8)
+            throw new IllegalStateException("stack is full");
+        a = Arrays.copyOf(a, a.length*2);
+    }
+
+    /**Function to return how many ints are on the stack**/
+    public int size()
+    {
+        return top;
+    }
+
+    /**Function to return how many ints fit before the array doubles**/
+    public int capacity()
+    {
+        return a.length;
+    }
+
+    /**Function to return whether stack is empty**/
+    public boolean isEmpty()
+    {
+        return top == 0;
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Class which implements a bounded Queue on a circular array that any number of threads can offer to and poll from
+ * at the same time, without locks.
+ *
+ * Note that generics are used. null can not be put in, poll() uses it to say the queue is empty.
+ *
+ * Every slot has a sequence number that says whose turn it is (the ring is a power of two long, slot = position & mask):
+ *
+ *      sequence == position             -- empty, the producer that claims this position can write it
+ *      sequence == position + 1         -- full, the consumer that claims this position can read it
+ *      sequence == position + capacity  -- read, empty again for the producer one lap later
+ *
+ * offer() reads the slot at tail, and if it is its turn claims the position by moving tail on with compareAndSet, writes
+ * the element and then the sequence. poll() does the same with head. The sequence is written after the element and
+ * read before it, so whoever sees the new sequence sees the element. A slot that is a lap behind means the queue is full
+ * (offer() returns false) or empty (poll() returns null), so neither ever waits. Only the thread that claimed a position
+ * touches its slot, so a failed compareAndSet only means another thread got there first and it tries the next one.
+ *
+ * head and tail are written by every producer and every consumer, so they are kept in one AtomicLongArray far enough
+ * apart to be on different cache lines, and a producer moving tail does not throw the consumers' head out of their
+ * caches (false sharing).
+ *
+ * offer(T data), poll(), size(), capacity() and isEmpty() are the functions
+ */
+
+package queue;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class RingQueue<T>
+{
+    /**Class member variables**/
+    private final Object[] a;
+    private final AtomicLongArray sequence;
+    private final int mask;
+
+    //head and tail, 128 bytes apart and away from the array header, on cache lines of their own
+    private final AtomicLongArray counters = new AtomicLongArray(48);
+    private static final int HEAD = 16, TAIL = 32;
+
+    /**Constructor creates an empty queue of capacity slots, rounded up to a power of two**/
+    public RingQueue(int capacity)
+    {
+        if(capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("capacity out of range: " + capacity);
+        int size = Integer.highestOneBit(capacity);
+        if(size < capacity)
+            size <<= 1;
+        a = new Object[size];
+        sequence = new AtomicLongArray(size);
+        mask = size - 1;
+        //every slot is empty and waiting for the first lap
+        for(int i = 0; i < size; i++)
+            sequence.set(i, i);
+    }
+
+    /**Offer function adds one at the back, returns false if the queue is full**/
+    public boolean offer(T data)
+    {
+        if(data == null)
+            throw new NullPointerException();
+        while(true)
+        {
+            long position = counters.get(TAIL);
+            int i = (int)position & mask;
+            long turn = sequence.get(i) - position;
+            if(turn == 0)
+            {
+                //empty, claim it
+                if(counters.compareAndSet(TAIL, position, position + 1))
+                {
+                    a[i] = data;
+                    sequence.lazySet(i, position + 1);
+                    return true;
+                }
+            }
+            else if(turn < 0)
+            {
+                //not read yet from the last lap
+                return false;
+            }
+            //another producer got it first, try the next one
+        }
+    }
+
+    /**Poll function removes one from the front, returns null if the queue is empty**/
+    @SuppressWarnings("unchecked")
+    public T poll()
+    {
+        while(true)
+        {
+            long position = counters.get(HEAD);
+            int i = (int)position & mask;
+            long turn = sequence.get(i) - (position + 1);
+            if(turn == 0)
+            {
+                //full, claim it
+                if(counters.compareAndSet(HEAD, position, position + 1))
+                {
+                    T data = (T) a[i];
+                    a[i] = null;
+                    //empty again for the next lap
+                    sequence.lazySet(i, position + mask + 1);
+                    return data;
+                }
+            }
+            else if(turn < 0)
+            {
+                //nothing written here yet
+                return null;
+            }
+            //another consumer got it first, try the next one
+        }
+    }
+
+    /**Function to return how many elements are in the queue, only a snapshot while other threads use it**/
+    public int size()
+    {
+        while(true)
+        {
+            long head = counters.get(HEAD);
+            long tail = counters.get(TAIL);
+            //head has to be read again, or a poll() in between could make it look like more than the capacity
+            if(counters.get(HEAD) == head)
+                return (int)Math.max(0, Math.min(tail - head, mask + 1));
+        }
+    }
+
+    /**Function to return how many elements fit**/
+    public int capacity()
+    {
+        return mask + 1;
+    }
+
+    /**Function to return whether queue is empty**/
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+}
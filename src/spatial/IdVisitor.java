@@ -0,0 +1,9 @@
+package spatial;
+
+/**
+ * Interface for callers that want each id a query finds handed to them as it is found, instead of a list.
+ */
+public interface IdVisitor
+{
+    void visit(int id);
+}
@@ -0,0 +1,1007 @@
+package spatial;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import queue.IntArrayQueue;
+import queue.IntArrayStack;
+
+/**
+ * KD Tree over ids and primitive coordinates. Nodes split on x, then y, then z, ext... and instead of one object per
+ * node the tree lives in a handful of primitive arrays. The tree is built as an implicit heap:
+ *
+ *      node i has children 2i+1 (left) and 2i+2 (right)
+ *
+ * The median of every subtree is picked so the tree is left-balanced (complete), so the arrays are exactly as long
+ * as the number of ids and there are no holes. Medians are found with an introselect over one array of ids, there
+ * are no presorted copies and no temp arrays. build() reuses every array from the last build.
+ *
+ * Where heap node i is kept in the arrays is up to the layout (setLayout(), used from the next build on). In heap
+ * order the children are worked out as above, in the others every walk goes from a node to its children through
+ * links[2p] and links[2p+1] (size if there is none, so "child < size" means the same in every layout):
+ *
+ *      1. LAYOUT_HEAP     -- heap order, node i at i. Going down a level jumps twice as far as the last time, so deep
+ *                            in a big tree every level is a cache miss in every array
+ *      2. LAYOUT_BLOCKED  -- subtrees of BLOCK_LEVELS levels are kept together, then the subtrees under them, depth
+ *                            first, so a walk down touches one block of every array per BLOCK_LEVELS levels
+ *      3. LAYOUT_VEB      -- van Emde Boas order: the top half of the levels together, then every subtree under them,
+ *                            each laid out the same way, so it keeps walks down together for any cache line size
+ *
+ * In all three a parent comes before its children.
+ *
+ * Per node arrays:
+ *
+ *      1. split  -- coordinate of the node's point on its split axis
+ *      2. axis   -- split axis (0 = x, 1 = y, 2 = z)
+ *      3. item   -- id of the node's point
+ *      4. nodeX, nodeY, nodeZ -- position of the node's point so the tree walk stays in these arrays
+ *      5. alive  -- false once the node's id has been removed
+ *      6. minX..maxZ -- bounding box of every live point in the node's subtree
+ *
+ * Points only move a little every tick, so the tree does not have to be rebuilt every tick. update() pulls the new
+ * positions in and recomputes the bounding boxes bottom up without changing the shape of the tree. Because queries
+ * prune on the bounding boxes rather than the split planes the answers stay exact, they just get slower as the boxes
+ * start to overlap. needsRebuild() says when that (or the number of removed ids) has gone past its threshold.
+ *
+ * An outer class can then call on (directly, or through its own Query from newQuery() on other threads):
+ *
+ *      1. neighbors
+ *
+ *      Which will hand every id in a radius the user specifies to an IdVisitor without allocating anything.
+ *
+ *      2. kNearest
+ *
+ *      Which will return the k ids closest to a point, using a bounded max heap and backtracking.
+ *
+ *      3. sweep
+ *
+ *      Which will return every id a moving sphere touches along a segment, in time of impact order, so fast
+ *      bombs can not tunnel through targets between ticks.
+ *
+ *      4. levelOrder, preOrder
+ *
+ *      Which hand every live id to an IdVisitor breadth first or depth first, with an IntArrayQueue or IntArrayStack
+ *      kept in the tree, so a traversal allocates nothing (single threaded, like the other helpers).
+ *
+ * Debugging Tools:
+ *
+ *      1. iterativeLevelOrder
+ *      2. preOrder
+ */
+public class KD_Tree implements SpatialIndex3D
+{
+    /**Class Member Variables**/
+    //per node arrays in heap order
+    double[] split;
+    byte[] axis;
+    int[] item;
+    double[] nodeX, nodeY, nodeZ;
+
+    //node holding each id
+    int[] nodeOf;
+
+    //left and right child of every node (2p and 2p + 1), size if there is none, not used in heap order
+    int[] links;
+    boolean linked;//layout of the last build is not heap order
+
+    //where heap node i goes in the arrays, for the layout and size it was worked out for
+    private int[] position;
+    private int layoutSize = -1, layoutBuilt = -1, placed;
+
+    //node layouts, see setLayout()
+    public static final int LAYOUT_HEAP = 0, LAYOUT_BLOCKED = 1, LAYOUT_VEB = 2;
+    //levels of one block of LAYOUT_BLOCKED, 15 nodes, two cache lines of every double array
+    public static final int BLOCK_LEVELS = 4;
+    int layout = LAYOUT_HEAP;
+
+    //per node liveness and subtree bounding boxes
+    boolean[] alive;
+    double[] minX, maxX, minY, maxY, minZ, maxZ;
+
+    //number of nodes and how many of them have been removed since the last build
+    int size;
+    int deadCount;
+
+    //how much sibling boxes overlap on their split axis, 0 right after a build
+    double overlap;
+
+    //rebuild once sibling boxes overlap by more than this much of their parent's extent
+    double maxOverlap = 0.25;
+    //rebuild once more than this fraction of the nodes are dead
+    double maxDead = 0.25;
+
+    //query used by the single threaded helpers
+    private TreeQuery query;
+
+    //node queue and stack used by the traversals, kept so they allocate nothing once they are big enough
+    private final IntArrayQueue levelQueue = new IntArrayQueue();
+    private final IntArrayStack depthStack = new IntArrayStack();
+
+    //scratch used while building: ids, kept for the next build, and the caller's coordinates
+    private int[] perm;
+    private double[] posX, posY, posZ;
+
+    //subtrees with at most this many points are built on the thread that reaches them
+    public static final int SEQUENTIAL_CUTOFF = 4096;
+    int sequentialCutoff;
+    ForkJoinPool pool;
+
+    //split every node on the axis its points are spread out the most on instead of x, y, z, ext...
+    boolean splitOnWidestAxis;
+
+    /**KD TREE CONSTRUCTOR, BUILDS ON THE CALLING THREAD**/
+    public KD_Tree(){
+        this(null, SEQUENTIAL_CUTOFF);
+    }
+
+    /**KD TREE CONSTRUCTOR THAT BUILDS SUBTREES IN PARALLEL ON pool (null BUILDS ON THE CALLING THREAD)**/
+    /**Gives the same tree as the sequential build, every subtree owns its own range of perm and its own nodes.**/
+    public KD_Tree(ForkJoinPool pool, int sequentialCutoff){
+        this.pool = pool;
+        this.sequentialCutoff = sequentialCutoff;
+        allocate(0);
+    }
+
+    /**FUNCTION TO BUILD THE TREE FROM IDS 0..n-1, REUSING THE ARRAYS FROM THE LAST BUILD**/
+    /**Arrays only get reallocated when there are more points than ever before, so steady state rebuilds allocate nothing.**/
+    public void build(double[] x, double[] y, double[] z, int n){
+        size = n;
+        deadCount = 0;
+
+        //grow arrays if needed
+        if(item.length < size){
+            allocate(size);
+        }
+
+        //where every node goes only changes with the number of nodes or the layout
+        if(layoutSize != size || layoutBuilt != layout){
+            placeNodes();
+        }
+
+        //start with every id in order
+        posX = x;
+        posY = y;
+        posZ = z;
+        for(int i = 0; i < size; i++){
+            perm[i] = i;
+        }
+
+        if(pool == null){
+            buildTree(0, 0, size, 0);
+        }
+        else{
+            pool.invoke(new BuildTask(0, 0, size, 0));
+        }
+        refitBounds();
+
+        //do not hold on to the caller's arrays
+        posX = posY = posZ = null;
+    }
+
+    /**FUNCTION TO ALLOCATE EVERY ARRAY FOR capacity NODES**/
+    private void allocate(int capacity){
+        split = new double[capacity];
+        axis = new byte[capacity];
+        item = new int[capacity];
+        nodeOf = new int[capacity];
+        links = new int[2*capacity];
+        position = new int[capacity];
+        layoutSize = -1;
+        nodeX = new double[capacity];
+        nodeY = new double[capacity];
+        nodeZ = new double[capacity];
+        alive = new boolean[capacity];
+        minX = new double[capacity];
+        maxX = new double[capacity];
+        minY = new double[capacity];
+        maxY = new double[capacity];
+        minZ = new double[capacity];
+        maxZ = new double[capacity];
+
+        //build scratch, one int per point in total
+        perm = new int[capacity];
+
+        query = new TreeQuery();
+    }
+
+    /**FUNCTION TO CHOOSE HOW NODES ARE LAID OUT IN THE ARRAYS FROM THE NEXT build() ON**/
+    public void setLayout(int layout){
+        if(layout != LAYOUT_HEAP && layout != LAYOUT_BLOCKED && layout != LAYOUT_VEB){
+            throw new IllegalArgumentException("unknown layout: " + layout);
+        }
+        this.layout = layout;
+    }
+
+    /**FUNCTION TO RETURN THE LAYOUT THE NEXT build() USES**/
+    public int layout(){
+        return layout;
+    }
+
+    /**FUNCTION TO WORK OUT WHERE EVERY HEAP NODE GOES FOR THE LAYOUT AND WHERE ITS CHILDREN END UP**/
+    private void placeNodes(){
+        placed = 0;
+        if(layout == LAYOUT_BLOCKED && size > 0){
+            placeBlocked(0, levels(size));
+        }
+        else if(layout == LAYOUT_VEB && size > 0){
+            placeVanEmdeBoas(0, levels(size));
+        }
+        else{
+            for(int i = 0; i < size; i++){
+                position[i] = i;
+            }
+        }
+
+        //children of every node where they were put
+        for(int i = 0; i < size; i++){
+            int p = position[i];
+            int left = 2*i + 1;
+            links[2*p] = left < size ? position[left] : size;
+            links[2*p + 1] = left + 1 < size ? position[left + 1] : size;
+        }
+        linked = layout != LAYOUT_HEAP;
+        layoutSize = size;
+        layoutBuilt = layout;
+    }
+
+    /**FUNCTION TO PLACE THE SUBTREE OF height LEVELS UNDER HEAP NODE root, BLOCK_LEVELS LEVELS AT A TIME**/
+    private void placeBlocked(int root, int height){
+        //the block, a level at a time
+        int levels = Math.min(BLOCK_LEVELS, height);
+        for(int level = 0; level < levels; level++){
+            long first = ((long)(root + 1) << level) - 1;
+            for(long i = first; i < first + (1 << level) && i < size; i++){
+                position[(int)i] = placed++;
+            }
+        }
+
+        //then the blocks under it, left to right
+        if(height > levels){
+            long first = ((long)(root + 1) << levels) - 1;
+            for(long i = first; i < first + (1 << levels) && i < size; i++){
+                placeBlocked((int)i, height - levels);
+            }
+        }
+    }
+
+    /**FUNCTION TO PLACE THE SUBTREE OF height LEVELS UNDER HEAP NODE root IN VAN EMDE BOAS ORDER**/
+    private void placeVanEmdeBoas(int root, int height){
+        if(height == 1){
+            position[root] = placed++;
+            return;
+        }
+
+        //top half of the levels, then every subtree hanging under it, left to right
+        int top = height/2;
+        placeVanEmdeBoas(root, top);
+        long first = ((long)(root + 1) << top) - 1;
+        for(long i = first; i < first + (1 << top) && i < size; i++){
+            placeVanEmdeBoas((int)i, height - top);
+        }
+    }
+
+    /**FUNCTION TO PLACE THE MEDIAN OF perm[start, end) AT node AND RECURSE INTO ITS CHILDREN**/
+    private void buildTree(int node, int start, int end, int depth){
+        /**BASE CASE**/
+        if(start >= end){
+            return;
+        }
+
+        int a = chooseAxis(start, end, depth);
+
+        //median that keeps the tree left-balanced
+        int median = start + leftSubtreeSize(end - start);
+        select(start, end, median, a);
+
+        fillNode(node, perm[median], a);
+
+        //recursive call with the next axis
+        buildTree(2*node + 1, start, median, depth + 1);
+        buildTree(2*node + 2, median + 1, end, depth + 1);
+    }
+
+    /**FUNCTION TO PUT id AT HEAP NODE node (WHEREVER THE LAYOUT KEEPS IT), SPLITTING ON AXIS a**/
+    private void fillNode(int node, int id, int a){
+        node = position[node];
+        axis[node] = (byte)a;
+        item[node] = id;
+        nodeOf[id] = node;
+        nodeX[node] = posX[id];
+        nodeY[node] = posY[id];
+        nodeZ[node] = posZ[id];
+        alive[node] = true;
+        split[node] = coordinate(a, id);
+    }
+
+    /**FORK JOIN TASK THAT BUILDS ONE SUBTREE, SPLITTING INTO TWO TASKS UNTIL THE SEQUENTIAL CUTOFF**/
+    private class BuildTask extends RecursiveAction{
+        private static final long serialVersionUID = 1L;
+        private int node, start, end, depth;
+
+        BuildTask(int node, int start, int end, int depth){
+            this.node = node;
+            this.start = start;
+            this.end = end;
+            this.depth = depth;
+        }
+
+        protected void compute(){
+            //small enough to finish on this thread
+            if(end - start <= sequentialCutoff){
+                buildTree(node, start, end, depth);
+                return;
+            }
+
+            //same split as buildTree
+            int a = chooseAxis(start, end, depth);
+            int median = start + leftSubtreeSize(end - start);
+            select(start, end, median, a);
+            fillNode(node, perm[median], a);
+
+            //both halves as tasks
+            invokeAll(new BuildTask(2*node + 1, start, median, depth + 1),
+                      new BuildTask(2*node + 2, median + 1, end, depth + 1));
+        }
+    }
+
+    /**FUNCTION TO RETURN HOW MANY OF n NODES GO IN THE LEFT SUBTREE OF A COMPLETE BINARY TREE**/
+    static int leftSubtreeSize(int n){
+        if(n <= 1){
+            return 0;
+        }
+
+        //height of the tree (root is level 0)
+        int h = 31 - Integer.numberOfLeadingZeros(n);
+
+        //nodes above the last level and nodes on the last level
+        int full = (1 << h) - 1;
+        int last = n - full;
+
+        //the left subtree gets half of the full levels plus up to half of the last level
+        return (full - 1)/2 + Math.min(last, 1 << (h - 1));
+    }
+
+    /**FUNCTION TO RETURN HOW MANY LEVELS A COMPLETE BINARY TREE OF n NODES HAS**/
+    static int levels(int n){
+        return 32 - Integer.numberOfLeadingZeros(n);
+    }
+
+    /**FUNCTION TO PICK THE SPLIT AXIS FOR THE POINTS IN perm[start, end)**/
+    private int chooseAxis(int start, int end, int depth){
+        //x, then y, then z, ext...
+        if(!splitOnWidestAxis){
+            return depth % 3;
+        }
+
+        //axis the points are spread out the most on
+        double loX = Double.POSITIVE_INFINITY, loY = loX, loZ = loX;
+        double hiX = Double.NEGATIVE_INFINITY, hiY = hiX, hiZ = hiX;
+        for(int i = start; i < end; i++){
+            int id = perm[i];
+            loX = Math.min(loX, posX[id]);
+            hiX = Math.max(hiX, posX[id]);
+            loY = Math.min(loY, posY[id]);
+            hiY = Math.max(hiY, posY[id]);
+            loZ = Math.min(loZ, posZ[id]);
+            hiZ = Math.max(hiZ, posZ[id]);
+        }
+        double x = hiX - loX, y = hiY - loY, z = hiZ - loZ;
+        if(x >= y && x >= z) return 0;
+        if(y >= z) return 1;
+        return 2;
+    }
+
+    /**INTROSELECT SO perm[k] HOLDS THE k-TH SMALLEST COORDINATE ON AXIS a IN perm[start, end)**/
+    /**Quickselect with median of three pivots. If the pivots keep being bad it heap sorts what is left, so it never goes quadratic.**/
+    private void select(int start, int end, int k, int a){
+        int lo = start;
+        int hi = end - 1;
+
+        //a good pivot at least halves the range, so this many partitions should always be enough
+        int budget = 2*levels(end - start);
+
+        while(hi > lo){
+            if(budget-- == 0){
+                heapSort(lo, hi + 1, a);
+                return;
+            }
+
+            double pivot = medianOfThree(coordinate(a, perm[lo]), coordinate(a, perm[(lo + hi) >>> 1]), coordinate(a, perm[hi]));
+            int i = lo;
+            int j = hi;
+
+            //partition around the pivot
+            while(i <= j){
+                while(coordinate(a, perm[i]) < pivot) i++;
+                while(coordinate(a, perm[j]) > pivot) j--;
+                if(i <= j){
+                    int temp = perm[i];
+                    perm[i++] = perm[j];
+                    perm[j--] = temp;
+                }
+            }
+
+            //keep going on the side that holds k
+            if(k <= j){
+                hi = j;
+            }
+            else if(k >= i){
+                lo = i;
+            }
+            else{
+                return;
+            }
+        }
+    }
+
+    /**FUNCTION TO RETURN THE MIDDLE ONE OF THREE VALUES**/
+    private static double medianOfThree(double a, double b, double c){
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    /**FUNCTION TO SORT perm[start, end) BY AXIS a IN PLACE, THE FALLBACK FOR select**/
+    private void heapSort(int start, int end, int a){
+        int n = end - start;
+
+        //make a max heap
+        for(int i = n/2 - 1; i >= 0; i--){
+            siftDown(start, i, n, a);
+        }
+
+        //move the biggest to the back one at a time
+        for(int last = n - 1; last > 0; last--){
+            int temp = perm[start];
+            perm[start] = perm[start + last];
+            perm[start + last] = temp;
+            siftDown(start, 0, last, a);
+        }
+    }
+
+    /**FUNCTION TO SIFT perm[start + i] DOWN A HEAP OF n ENTRIES STARTING AT start**/
+    private void siftDown(int start, int i, int n, int a){
+        int id = perm[start + i];
+        double key = coordinate(a, id);
+        while(2*i + 1 < n){
+            int child = 2*i + 1;
+            if(child + 1 < n && coordinate(a, perm[start + child + 1]) > coordinate(a, perm[start + child])){
+                child++;
+            }
+            if(coordinate(a, perm[start + child]) <= key){
+                break;
+            }
+            perm[start + i] = perm[start + child];
+            i = child;
+        }
+        perm[start + i] = id;
+    }
+
+    /**FUNCTION TO RETURN A POINT'S COORDINATE ON AN AXIS WHILE BUILDING**/
+    private double coordinate(int a, int id){
+        if(a == 0) return posX[id];
+        if(a == 1) return posY[id];
+        return posZ[id];
+    }
+
+    /**FUNCTION TO PULL NEW POSITIONS INTO THE TREE WITHOUT CHANGING ITS SHAPE**/
+    /**Removed ids stay in the tree but are skipped.**/
+    public void update(double[] x, double[] y, double[] z){
+        for(int i = 0; i < size; i++){
+            if(alive[i]){
+                int id = item[i];
+                nodeX[i] = x[id];
+                nodeY[i] = y[id];
+                nodeZ[i] = z[id];
+            }
+        }
+        refitBounds();
+    }
+
+    /**FUNCTION TO DROP AN ID, ITS NODE STAYS BUT IS SKIPPED UNTIL THE NEXT BUILD**/
+    /**Boxes are not shrunk until the next update, they are only ever too big, so queries stay exact.**/
+    public void remove(int id){
+        int node = nodeOf[id];
+        if(alive[node]){
+            alive[node] = false;
+            deadCount++;
+        }
+    }
+
+    /**FUNCTION TO RECOMPUTE EVERY BOUNDING BOX BOTTOM UP AND MEASURE HOW MUCH SIBLINGS OVERLAP**/
+    private void refitBounds(){
+        double overlapSum = 0;
+        double extentSum = 0;
+
+        //children always come after their parent (in every layout), so going backwards visits them first
+        for(int i = size - 1; i >= 0; i--){
+            //start with the node's own point, or an empty box if it is dead
+            if(alive[i]){
+                minX[i] = maxX[i] = nodeX[i];
+                minY[i] = maxY[i] = nodeY[i];
+                minZ[i] = maxZ[i] = nodeZ[i];
+            }
+            else{
+                minX[i] = minY[i] = minZ[i] = Double.POSITIVE_INFINITY;
+                maxX[i] = maxY[i] = maxZ[i] = Double.NEGATIVE_INFINITY;
+            }
+
+            //grow by both children
+            int left = linked ? links[2*i] : 2*i + 1;
+            int right = linked ? links[2*i + 1] : 2*i + 2;
+            if(left < size){
+                merge(i, left);
+            }
+            if(right < size){
+                merge(i, right);
+
+                //overlap of the two children on this node's split axis
+                double extent, shared;
+                if(axis[i] == 0){
+                    extent = maxX[i] - minX[i];
+                    shared = Math.min(maxX[left], maxX[right]) - Math.max(minX[left], minX[right]);
+                }
+                else if(axis[i] == 1){
+                    extent = maxY[i] - minY[i];
+                    shared = Math.min(maxY[left], maxY[right]) - Math.max(minY[left], minY[right]);
+                }
+                else{
+                    extent = maxZ[i] - minZ[i];
+                    shared = Math.min(maxZ[left], maxZ[right]) - Math.max(minZ[left], minZ[right]);
+                }
+                if(extent > 0){
+                    overlapSum += Math.max(shared, 0);
+                    extentSum += extent;
+                }
+            }
+        }
+        overlap = extentSum > 0 ? overlapSum/extentSum : 0;
+    }
+
+    /**FUNCTION TO GROW A NODE'S BOX BY ONE OF ITS CHILDREN'S BOXES**/
+    private void merge(int node, int child){
+        minX[node] = Math.min(minX[node], minX[child]);
+        maxX[node] = Math.max(maxX[node], maxX[child]);
+        minY[node] = Math.min(minY[node], minY[child]);
+        maxY[node] = Math.max(maxY[node], maxY[child]);
+        minZ[node] = Math.min(minZ[node], minZ[child]);
+        maxZ[node] = Math.max(maxZ[node], maxZ[child]);
+    }
+
+    /**FUNCTION TO SAY WHETHER THE TREE HAS GOTTEN LOOSE ENOUGH THAT A FULL REBUILD IS CHEAPER THAN UPDATING**/
+    public boolean needsRebuild(){
+        return overlap > maxOverlap || deadCount > maxDead*size;
+    }
+
+    /**FUNCTION TO RETURN HOW MANY IDS THE LAST BUILD WAS GIVEN**/
+    public int size(){
+        return size;
+    }
+
+    /**FUNCTION TO RETURN HOW MANY IDS ARE STILL IN THE TREE**/
+    public int liveCount(){
+        return size - deadCount;
+    }
+
+    /**FUNCTION TO HAND EVERY LIVE ID TO visitor A LEVEL AT A TIME FROM THE ROOT DOWN, RETURNS HOW MANY THERE WERE**/
+    public int levelOrder(IdVisitor visitor){
+        IntArrayQueue nodes = levelQueue;
+        nodes.clear();
+        if(size > 0){
+            nodes.enqueue(0);
+        }
+        int count = 0;
+        while(!nodes.isEmpty()){
+            int node = nodes.dequeue();
+            if(alive[node]){
+                visitor.visit(item[node]);
+                count++;
+            }
+            int left = linked ? links[2*node] : 2*node + 1;
+            int right = linked ? links[2*node + 1] : 2*node + 2;
+            if(left < size){
+                nodes.enqueue(left);
+            }
+            if(right < size){
+                nodes.enqueue(right);
+            }
+        }
+        return count;
+    }
+
+    /**FUNCTION TO HAND EVERY LIVE ID TO visitor NODE FIRST, THEN ITS LEFT AND RIGHT SUBTREES, RETURNS HOW MANY THERE WERE**/
+    /**Subtrees with no live ids left are skipped (their bounding box is empty).**/
+    public int preOrder(IdVisitor visitor){
+        IntArrayStack nodes = depthStack;
+        nodes.clear();
+        if(size > 0){
+            nodes.push(0);
+        }
+        int count = 0;
+        while(!nodes.isEmpty()){
+            int node = nodes.pop();
+            if(minX[node] > maxX[node]){
+                continue;
+            }
+            if(alive[node]){
+                visitor.visit(item[node]);
+                count++;
+            }
+            //right first so left comes off first
+            int left = linked ? links[2*node] : 2*node + 1;
+            int right = linked ? links[2*node + 1] : 2*node + 2;
+            if(right < size){
+                nodes.push(right);
+            }
+            if(left < size){
+                nodes.push(left);
+            }
+        }
+        return count;
+    }
+
+    /**FUNCTION TO RETURN THE SQUARE DISTANCE FROM A POINT TO A NODE'S BOUNDING BOX (0 IF INSIDE)**/
+    private double squareDistanceToBox(int node, double px, double py, double pz){
+        double x = Math.max(Math.max(minX[node] - px, px - maxX[node]), 0);
+        double y = Math.max(Math.max(minY[node] - py, py - maxY[node]), 0);
+        double z = Math.max(Math.max(minZ[node] - pz, pz - maxZ[node]), 0);
+        return x*x + y*y + z*z;
+    }
+
+    /**FUNCTION TO SAY WHETHER THE SEGMENT p0 + t*d (0 <= t <= 1) GOES THROUGH A NODE'S BOX GROWN BY radius ON EVERY SIDE**/
+    /**The grown box holds every point within radius of the real box, so no hit is ever pruned (slab test).**/
+    private boolean segmentHitsBox(int node, double x0, double y0, double z0, double dx, double dy, double dz, double radius){
+        //nothing alive below this node
+        if(minX[node] > maxX[node]){
+            return false;
+        }
+
+        double enter = 0;
+        double exit = 1;
+
+        //x slab
+        if(dx == 0){
+            if(x0 < minX[node] - radius || x0 > maxX[node] + radius) return false;
+        }
+        else{
+            double t1 = (minX[node] - radius - x0)/dx;
+            double t2 = (maxX[node] + radius - x0)/dx;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+            if(enter > exit) return false;
+        }
+
+        //y slab
+        if(dy == 0){
+            if(y0 < minY[node] - radius || y0 > maxY[node] + radius) return false;
+        }
+        else{
+            double t1 = (minY[node] - radius - y0)/dy;
+            double t2 = (maxY[node] + radius - y0)/dy;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+            if(enter > exit) return false;
+        }
+
+        //z slab
+        if(dz == 0){
+            if(z0 < minZ[node] - radius || z0 > maxZ[node] + radius) return false;
+        }
+        else{
+            double t1 = (minZ[node] - radius - z0)/dz;
+            double t2 = (maxZ[node] + radius - z0)/dz;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+            if(enter > exit) return false;
+        }
+
+        return true;
+    }
+
+    /**SINGLE THREADED HELPERS, THEY ALL SHARE ONE QUERY**/
+    /**FUNCTION TO HAND EVERY ID CLOSER THAN sqrt(squareRadius) TO visitor, RETURNS HOW MANY THERE WERE**/
+    public int neighbors(double px, double py, double pz, double squareRadius, IdVisitor visitor){
+        return query.neighbors(px, py, pz, squareRadius, visitor);
+    }
+
+    /**FUNCTION TO FIND EVERY ID A MOVING SPHERE TOUCHES, EARLIEST FIRST**/
+    public int sweep(double x0, double y0, double z0, double x1, double y1, double z1, double squareRadius, SweepHits hits){
+        return query.sweep(x0, y0, z0, x1, y1, z1, squareRadius, hits);
+    }
+
+    /**FUNCTION TO FIND THE k CLOSEST IDS, CLOSEST FIRST**/
+    public int kNearest(double px, double py, double pz, int k, Nearest nearest){
+        return query.kNearest(px, py, pz, k, nearest);
+    }
+
+    /**FUNCTION TO RETURN HOW MANY NODES THE LAST SINGLE THREADED CALL LOOKED AT (DEBUGGING)**/
+    public int visited(){
+        return query.visited;
+    }
+
+    /**FUNCTION TO MAKE A QUERY WITH ITS OWN STACK, ONE PER THREAD**/
+    public TreeQuery newQuery(){
+        return new TreeQuery();
+    }
+
+    /**QUERIES ON THIS TREE WITH THEIR OWN INDEX STACK**/
+    /**The stack is sized to the tree when the query is made and grows if the tree gets deeper, one slot per level is enough.**/
+    public class TreeQuery implements SpatialIndex3D.Query{
+        private int[] stack = new int[levels(item.length) + 1];
+        int visited;
+
+        /**FUNCTION TO MAKE SURE THE STACK IS DEEP ENOUGH FOR THE TREE AS IT IS NOW**/
+        private int[] stack(){
+            if(stack.length < levels(size) + 1){
+                stack = new int[levels(size) + 1];
+            }
+            return stack;
+        }
+
+        /**FUNCTION TO HAND EVERY NEIGHBOR OF GIVEN POINT TO visitor, RETURNS HOW MANY THERE WERE**/
+        /**Avoid square root with SQUARE RADIUS whenever possible. It's really expensive.**/
+        public int neighbors(double px, double py, double pz, double squareRadius, IdVisitor visitor){
+            int[] stack = stack();
+            int found = 0;
+            int top = 0;
+            visited = 0;
+
+            //start at root
+            if(size > 0 && squareDistanceToBox(0, px, py, pz) < squareRadius){
+                stack[top++] = 0;
+            }
+
+            while(top > 0){
+                int node = stack[--top];
+                visited++;
+
+                //distance formula without square root
+                if(alive[node]){
+                    double x = px - nodeX[node];
+                    double y = py - nodeY[node];
+                    double z = pz - nodeZ[node];
+                    if(x*x + y*y + z*z < squareRadius){
+                        visitor.visit(item[node]);
+                        found++;
+                    }
+                }
+
+                //only descend into children whose box the sphere reaches
+                int left = linked ? links[2*node] : 2*node + 1;
+                int right = linked ? links[2*node + 1] : 2*node + 2;
+                if(right < size && squareDistanceToBox(right, px, py, pz) < squareRadius){
+                    stack[top++] = right;
+                }
+                if(left < size && squareDistanceToBox(left, px, py, pz) < squareRadius){
+                    stack[top++] = left;
+                }
+            }
+            return found;
+        }
+
+        /**FUNCTION TO FIND EVERY LIVE ID A SPHERE OF squareRadius TOUCHES WHILE MOVING FROM (x0,y0,z0) TO (x1,y1,z1)**/
+        public int sweep(double x0, double y0, double z0, double x1, double y1, double z1, double squareRadius, SweepHits hits){
+            int[] stack = stack();
+            hits.clear();
+            visited = 0;
+
+            //path of the sphere's center is p(t) = p0 + t*d
+            double dx = x1 - x0;
+            double dy = y1 - y0;
+            double dz = z1 - z0;
+            double radius = Math.sqrt(squareRadius);
+
+            int top = 0;
+
+            //start at root
+            if(size > 0 && segmentHitsBox(0, x0, y0, z0, dx, dy, dz, radius)){
+                stack[top++] = 0;
+            }
+
+            while(top > 0){
+                int node = stack[--top];
+                visited++;
+
+                if(alive[node]){
+                    double t = SweepHits.timeOfImpact(x0 - nodeX[node], y0 - nodeY[node], z0 - nodeZ[node], dx, dy, dz, squareRadius);
+                    if(t >= 0){
+                        hits.add(item[node], t);
+                    }
+                }
+
+                //only descend into children whose box the capsule reaches
+                int left = linked ? links[2*node] : 2*node + 1;
+                int right = linked ? links[2*node + 1] : 2*node + 2;
+                if(right < size && segmentHitsBox(right, x0, y0, z0, dx, dy, dz, radius)){
+                    stack[top++] = right;
+                }
+                if(left < size && segmentHitsBox(left, x0, y0, z0, dx, dy, dz, radius)){
+                    stack[top++] = left;
+                }
+            }
+
+            hits.sortByTime();
+            return hits.size;
+        }
+
+        /**FUNCTION TO FIND THE k CLOSEST LIVE IDS TO A POINT, CLOSEST FIRST, RETURNS HOW MANY WERE FOUND**/
+        /**The answer goes in nearest, which can be kept and passed in again so nothing is allocated once it is big enough.**/
+        public int kNearest(double px, double py, double pz, int k, Nearest nearest){
+            int[] stack = stack();
+            nearest.clear(k);
+            visited = 0;
+            if(k <= 0){
+                return 0;
+            }
+
+            int top = 0;
+
+            //start at root
+            if(size > 0){
+                stack[top++] = 0;
+            }
+
+            while(top > 0){
+                int node = stack[--top];
+
+                //skip the subtree if its box is farther away than the worst of the k we have
+                if(nearest.size == k && squareDistanceToBox(node, px, py, pz) >= nearest.worst()){
+                    continue;
+                }
+                visited++;
+
+                //distance formula without square root
+                if(alive[node]){
+                    double x = px - nodeX[node];
+                    double y = py - nodeY[node];
+                    double z = pz - nodeZ[node];
+                    nearest.offer(item[node], x*x + y*y + z*z, k);
+                }
+
+                //push the farther child first so the closer one is searched first and shrinks the worst distance sooner
+                int left = linked ? links[2*node] : 2*node + 1;
+                int right = linked ? links[2*node + 1] : 2*node + 2;
+                if(right < size){
+                    if(squareDistanceToBox(left, px, py, pz) <= squareDistanceToBox(right, px, py, pz)){
+                        stack[top++] = right;
+                        stack[top++] = left;
+                    }
+                    else{
+                        stack[top++] = left;
+                        stack[top++] = right;
+                    }
+                }
+                else if(left < size){
+                    stack[top++] = left;
+                }
+            }
+
+            nearest.finish();
+            return nearest.size;
+        }
+
+        /**FUNCTION TO RETURN HOW MANY NODES THE LAST CALL LOOKED AT (DEBUGGING)**/
+        public int visited(){
+            return visited;
+        }
+    }
+
+    /**REUSABLE ANSWER FOR kNearest**/
+    /**ids[0, size) closest first with their square distances. While searching the same arrays hold a max heap on**/
+    /**distance, so the worst of the k found so far is always on top.**/
+    public static class Nearest{
+        public int[] ids = new int[0];
+        public double[] squareDistances = new double[0];
+        public int size;
+
+        /**FUNCTION TO EMPTY THE BUFFER AND MAKE ROOM FOR k**/
+        void clear(int k){
+            size = 0;
+            if(ids.length < k){
+                ids = new int[k];
+                squareDistances = new double[k];
+            }
+        }
+
+        /**FUNCTION TO RETURN THE WORST SQUARE DISTANCE IN THE HEAP**/
+        double worst(){
+            return squareDistances[0];
+        }
+
+        /**FUNCTION TO ADD A CANDIDATE IF THERE IS ROOM OR IF IT BEATS THE WORST ONE**/
+        void offer(int id, double squareDistance, int k){
+            if(size < k){
+                //sift up from the end
+                int i = size++;
+                while(i > 0){
+                    int parent = (i - 1)/2;
+                    if(squareDistances[parent] >= squareDistance){
+                        break;
+                    }
+                    ids[i] = ids[parent];
+                    squareDistances[i] = squareDistances[parent];
+                    i = parent;
+                }
+                ids[i] = id;
+                squareDistances[i] = squareDistance;
+            }
+            else if(squareDistance < squareDistances[0]){
+                //replace the worst and sift down
+                siftDown(0, size, id, squareDistance);
+            }
+        }
+
+        /**FUNCTION TO PUT id AT i AND SIFT IT DOWN A HEAP OF n ENTRIES**/
+        private void siftDown(int i, int n, int id, double squareDistance){
+            while(2*i + 1 < n){
+                int child = 2*i + 1;
+                if(child + 1 < n && squareDistances[child + 1] > squareDistances[child]){
+                    child++;
+                }
+                if(squareDistances[child] <= squareDistance){
+                    break;
+                }
+                ids[i] = ids[child];
+                squareDistances[i] = squareDistances[child];
+                i = child;
+            }
+            ids[i] = id;
+            squareDistances[i] = squareDistance;
+        }
+
+        /**FUNCTION TO TURN THE HEAP INTO IDS SORTED CLOSEST FIRST**/
+        void finish(){
+            //heap sort: move the worst to the back one at a time
+            for(int last = size - 1; last > 0; last--){
+                int id = ids[last];
+                double squareDistance = squareDistances[last];
+                ids[last] = ids[0];
+                squareDistances[last] = squareDistances[0];
+                siftDown(0, last, id, squareDistance);
+            }
+        }
+    }
+
+    /**DEBUGGING TOOLS**/
+    /**ITERATIVE FUNCTION TO TRAVERSE BREADTH FIRST**/
+    public void iterativeLevelOrder()
+    {
+        System.out.println("Iterative Level-Order");
+        IntArrayQueue nodes = levelQueue;
+        nodes.clear();
+        if(size > 0)
+            nodes.enqueue(0);
+        while(!nodes.isEmpty())
+        {
+            int node = nodes.dequeue();
+            System.out.println("X:" + nodeX[node] + " " + "Y:" + nodeY[node] + " " + "Z:" + nodeZ[node]);
+            int left = linked ? links[2*node] : 2*node + 1;
+            int right = linked ? links[2*node + 1] : 2*node + 2;
+            if(left < size)
+                nodes.enqueue(left);
+            if(right < size)
+                nodes.enqueue(right);
+        }
+        System.out.println();
+    }
+
+    /**ITERATIVE FUNCTION TO TRAVERSE BY ROOT, LEFT, RIGHT**/
+    public void preOrder()
+    {
+        System.out.println("Pre-Order");
+        IntArrayStack nodes = depthStack;
+        nodes.clear();
+        if(size > 0)
+            nodes.push(0);
+        while(!nodes.isEmpty())
+        {
+            int node = nodes.pop();
+            System.out.print("X:" + nodeX[node] + " " + "Y:" + nodeY[node] + " " + "Z:" + nodeZ[node]);
+            int left = linked ? links[2*node] : 2*node + 1;
+            int right = linked ? links[2*node + 1] : 2*node + 2;
+            if(right < size)
+                nodes.push(right);
+            if(left < size)
+                nodes.push(left);
+        }
+        System.out.println();
+    }
+}
@@ -0,0 +1,476 @@
+package spatial;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * @author conanz and georbeca
+ *
+ * KD Tree class that creates a tree of node objects based on x, y and z coordinates. The root will begin by x coordinate, then the children will be by y coordinates, then z coordinate, ext...
+ * 
+ * This is the original pointer based tree, kept as the baseline KD_Tree is measured and checked against. Points are
+ * ids 0..n-1 with their coordinates in the caller's arrays, the same as every SpatialIndex3D.
+ * 
+ * It takes in the coordinate arrays then implements:
+ * 
+ *      1.buildTreeX
+ *      2.buildTreeY
+ *      3.buildTreeZ
+ *      
+ *      To build the tree. Given a ForkJoinPool the two halves of every split are built as separate tasks
+ *      until they are smaller than the sequential cutoff.
+ * 
+ * An outer class can then call on:
+ * 
+ *      1. neighbors
+ * 
+ *      Which will hand every id in a radius the user specifies to an IdVisitor. Every node keeps the
+ *      bounding box of its subtree and the search only goes into subtrees whose box the sphere reaches.
+ * 
+ * Miscellaneous:
+ * 
+ * Debugging Tools:
+ *      
+ *      1. iterativeLevelOrderTraversal
+ *      2. preOrder Traversal
+ * 
+ *      To see the structure of the tree
+ * 
+ * Comparators:
+ * 
+ *      1. XComparator
+ *      2. YComparator
+ *      3. ZComparator
+ * 
+ *      For sorting the ids passed into the KD Tree
+ * 
+ * Inner Class:
+ * 
+ *      1. TreeNode
+ *         
+ *      To hold ids   
+ * 
+ */
+public class PointerKD_Tree
+{ 
+    /**Class Member Variables**/
+    //arrays to sort points by
+    Integer[] idsSortedByX;
+    Integer[] idsSortedByY;
+    Integer[] idsSortedByZ;
+    
+    //coordinates of every id, owned by the caller
+    double[] x, y, z;
+    
+    TreeNode root;
+    
+    //comparators the arrays are sorted with
+    XComparator xComparator = new XComparator();
+    YComparator yComparator = new YComparator();
+    ZComparator zComparator = new ZComparator();
+    
+    //nodes the last neighbors call looked at (debugging)
+    int visited;
+    
+    //subtrees with at most this many ids are built on the thread that reaches them
+    public static final int SEQUENTIAL_CUTOFF = 4096;
+    int sequentialCutoff;
+    
+    /**KD TREE CONSTRUCTOR**/
+    public PointerKD_Tree(double[] x, double[] y, double[] z, int n){
+        this(x, y, z, n, null, SEQUENTIAL_CUTOFF);
+    }
+    
+    /**KD TREE CONSTRUCTOR THAT BUILDS SUBTREES IN PARALLEL ON pool (null BUILDS ON THIS THREAD)**/
+    /**Gives the same tree as the sequential build, the two halves of every split never touch the same part of the arrays.**/
+    public PointerKD_Tree(double[] x, double[] y, double[] z, int n, ForkJoinPool pool, int sequentialCutoff){
+        this.sequentialCutoff = sequentialCutoff;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        
+        //initiate class member variables
+        idsSortedByX = new Integer[n];
+        idsSortedByY = new Integer[n];
+        idsSortedByZ = new Integer[n];
+        
+        //copy ids into x, y and z arrays, one boxed id shared by all three so they can be compared with ==
+        for(int i = 0; i < n; i++)
+        {
+            Integer id = Integer.valueOf(i);
+            idsSortedByX[i] = id;
+            idsSortedByY[i] = id;
+            idsSortedByZ[i] = id;
+        }
+        
+        if(pool == null)
+        {
+            //sort arrays
+            Arrays.sort(idsSortedByX, xComparator);
+            Arrays.sort(idsSortedByY, yComparator);
+            Arrays.sort(idsSortedByZ, zComparator);
+            
+            root = buildTreeX(idsSortedByX, idsSortedByY, idsSortedByZ, 0, n );
+        }
+        else
+        {
+            //sort arrays (merge sorts are stable, so the order matches Arrays.sort)
+            Arrays.parallelSort(idsSortedByX, xComparator);
+            Arrays.parallelSort(idsSortedByY, yComparator);
+            Arrays.parallelSort(idsSortedByZ, zComparator);
+            
+            root = pool.invoke(new BuildTask(0, 0, n));
+        }
+        
+        computeBounds(root);
+    }
+    
+    /**FUNCTION TO CREATE TREE BASED ON X COORDINATES**/
+    TreeNode buildTreeX(Integer[] idsSortedByX1, Integer[] idsSortedByY1, Integer[] idsSortedByZ1, int start, int end){
+        /**BASE CASE**/
+        if(start >= end){
+            return null;
+        }
+        
+        //root of tree sorted by X, with the other arrays reworked around it
+        TreeNode n = split(idsSortedByX1, idsSortedByY1, idsSortedByZ1, 0, start, end);
+        int median = start+ (end-start)/2;
+        
+        //recursive call to switch nodes to hold y coordinates
+        n.left = buildTreeY(idsSortedByX1, idsSortedByY1, idsSortedByZ1, start, median);
+        n.right = buildTreeY(idsSortedByX1, idsSortedByY1, idsSortedByZ1, median+1, end);
+        
+        return n;
+    }
+
+
+    /**FUNCTION TO CREATE TREE BASED ON Y COORDINATES**/
+    TreeNode buildTreeY(Integer[] idsSortedByX1, Integer[] idsSortedByY1, Integer[] idsSortedByZ1, int start, int end){
+        /**BASE CASE**/
+        if(start >= end){
+            return null;
+        }
+        
+        //root of tree sorted by Y, with the other arrays reworked around it
+        TreeNode n = split(idsSortedByY1, idsSortedByZ1, idsSortedByX1, 1, start, end);
+        int median = start+ (end-start)/2;
+        
+        //recursive call to switch nodes to hold z coordinates
+        n.left = buildTreeZ(idsSortedByX1, idsSortedByY1 ,  idsSortedByZ1, start, median);
+        n.right = buildTreeZ(idsSortedByX1, idsSortedByY1, idsSortedByZ1, median+1, end);
+        
+        return n;
+    }
+    
+    /**FUNCTION TO CREATE TREE BASED ON Z COORDINATES**/
+    TreeNode buildTreeZ(Integer[] idsSortedByX1, Integer[] idsSortedByY1, Integer[] idsSortedByZ1, int start, int end){
+        /**BASE CASE**/
+        if(start >= end){
+            return null;
+        }
+        
+        //root of tree sorted by Z, with the other arrays reworked around it
+        TreeNode n = split(idsSortedByZ1, idsSortedByX1, idsSortedByY1, 2, start, end);
+        int median = start+ (end-start)/2;
+        
+        //recursive call to switch nodes to hold x coordinates
+        n.left = buildTreeX(idsSortedByX1, idsSortedByY1 ,  idsSortedByZ1, start, median);
+        n.right = buildTreeX(idsSortedByX1, idsSortedByY1, idsSortedByZ1, median+1, end);
+        
+        return n;
+    }
+    
+    /**FUNCTION TO MAKE THE NODE FOR THE MEDIAN OF sorted AND REWORK THE OTHER TWO ARRAYS SO THEIR HALVES ARE EACH SIDE OF IT**/
+    /**type says which coordinate sorted is sorted by. Both other arrays have to be reworked, otherwise their ranges stop**/
+    /**holding the same targets as sorted's and targets go missing or show up twice further down the tree.**/
+    private TreeNode split(Integer[] sorted, Integer[] next, Integer[] other, int type, int start, int end){
+        //find median
+        int median = start+ (end-start)/2;
+        Integer m = sorted[median];
+        
+        //node holding the median, children are filled in by the caller
+        TreeNode n = new TreeNode(m, null, null, type);
+        
+        //rework the other arrays because their medians will be different than this one
+        partition(sorted, next, m, type, start, end, median);
+        partition(sorted, other, m, type, start, end, median);
+        
+        return n;
+    }
+    
+    /**FUNCTION TO STABLY MOVE THE TARGETS OF array THAT ARE IN THE LEFT HALF OF sorted BEFORE median AND THE REST AFTER IT**/
+    private void partition(Integer[] sorted, Integer[] array, Integer m, int type, int start, int end, int median){
+        Integer[] temp = new Integer[end-start];
+        
+        //start at beginning of temp
+        int j = 0;
+        
+        //fill in temp with values less than the median
+        for(int i = start; i < end; i++){
+            if(goesLeft(sorted, array[i], m, type, start, median)){
+                temp[j++] = array[i];
+            }
+        }
+        
+        //fill in temp with values greater than median
+        for(int k = start; k < end; k++){
+            if(array[k] != m && !goesLeft(sorted, array[k], m, type, start, median)) {
+                temp[j++] = array[k];
+            }
+        }
+        
+        //copy temp into array
+        for (int l=start; l<end; l++) {
+            //values less than median
+            if (l < median) {
+                array[l] = temp[l-start];
+            } 
+            //equal to median
+            else if (l == median) {
+                array[l] = m;
+            }
+            //greater than median
+            else if (l > median) {
+                array[l] = temp[l-start-1];
+            }
+        }
+    }
+    
+    /**FUNCTION TO SAY WHETHER t IS IN THE LEFT HALF OF sorted**/
+    /**The comparators break ties on the other two coordinates, so only targets at exactly the same spot as the median**/
+    /**need to be looked up in sorted. That keeps the left half exactly median-start targets.**/
+    private boolean goesLeft(Integer[] sorted, Integer t, Integer m, int type, int start, int median){
+        if(t == m) return false;
+        int c = compare(t, m, type);
+        if(c != 0) return c < 0;
+        
+        //same spot as the median, look for it before the median in sorted
+        for(int i = median - 1; i >= start && compare(sorted[i], m, type) == 0; i--){
+            if(sorted[i] == t) return true;
+        }
+        return false;
+    }
+    
+    /**FUNCTION TO COMPARE TWO TARGETS THE WAY THE ARRAY SORTED BY type IS SORTED**/
+    private int compare(Integer p1, Integer p2, int type){
+        if(type == 0) return xComparator.compare(p1, p2);
+        if(type == 1) return yComparator.compare(p1, p2);
+        return zComparator.compare(p1, p2);
+    }
+    
+    /**FORK JOIN TASK THAT BUILDS ONE SUBTREE, SPLITTING INTO TWO TASKS UNTIL THE SEQUENTIAL CUTOFF**/
+    private class BuildTask extends RecursiveTask<TreeNode>{
+        private static final long serialVersionUID = 1L;
+        private int type, start, end;
+        
+        BuildTask(int type, int start, int end){
+            this.type = type;
+            this.start = start;
+            this.end = end;
+        }
+        
+        protected TreeNode compute(){
+            //small enough to finish on this thread
+            if(end - start <= sequentialCutoff){
+                if(type == 0) return buildTreeX(idsSortedByX, idsSortedByY, idsSortedByZ, start, end);
+                if(type == 1) return buildTreeY(idsSortedByX, idsSortedByY, idsSortedByZ, start, end);
+                return buildTreeZ(idsSortedByX, idsSortedByY, idsSortedByZ, start, end);
+            }
+            
+            //same split as buildTreeX/Y/Z
+            TreeNode n;
+            if(type == 0) n = split(idsSortedByX, idsSortedByY, idsSortedByZ, 0, start, end);
+            else if(type == 1) n = split(idsSortedByY, idsSortedByZ, idsSortedByX, 1, start, end);
+            else n = split(idsSortedByZ, idsSortedByX, idsSortedByY, 2, start, end);
+            int median = start+ (end-start)/2;
+            
+            //left half on another thread, right half on this one
+            BuildTask left = new BuildTask((type + 1) % 3, start, median);
+            left.fork();
+            n.right = new BuildTask((type + 1) % 3, median + 1, end).compute();
+            n.left = left.join();
+            
+            return n;
+        }
+    }
+    
+    /**DRIVER FUNCTION NEIGHBORS, RETURNS HOW MANY THERE WERE**/
+    public int neighbors(double px, double py, double pz, double squareRadius, IdVisitor visitor){
+        visited = 0;
+        return neighbors(px, py, pz, squareRadius, root, visitor);
+    }
+    
+    /**FUNCTION TO HAND NEIGHBORS OF GIVEN POINT TO visitor BY SEARCHING THROUGH KD TREE**/
+    /**Avoid square root with SQUARE RADIUS whenever possible. It's really expensive.**/
+    /**A subtree is only searched if the sphere reaches its bounding box, so no neighbor is missed and far subtrees are skipped.**/
+    private int neighbors(double px, double py, double pz, double squareRadius, TreeNode n, IdVisitor visitor){
+        //fallen off list, or the whole subtree is out of radius
+        if(n == null || n.squareDistanceToBox(px, py, pz) >= squareRadius) return 0;
+        visited++;
+        int found = 0;
+        
+        //distance formula without square root
+        double dx = (px - x[n.point])*(px - x[n.point]);
+        double dy = (py - y[n.point])*(py - y[n.point]);
+        double dz = (pz - z[n.point])*(pz - z[n.point]);
+        double a =  dx + dy + dz;
+        
+        //distance is less than the radius given
+        if( a < squareRadius){
+            visitor.visit(n.point);
+            found++;
+        }
+        
+        //children check their own boxes
+        found += neighbors(px, py, pz, squareRadius, n.left, visitor);
+        found += neighbors(px, py, pz, squareRadius, n.right, visitor);
+        return found;
+    }
+    
+    /**FUNCTION TO SET EVERY NODE'S BOUNDING BOX FROM ITS CHILDREN'S**/
+    private void computeBounds(TreeNode n){
+        if(n == null) return;
+        computeBounds(n.left);
+        computeBounds(n.right);
+        
+        n.minX = n.maxX = x[n.point];
+        n.minY = n.maxY = y[n.point];
+        n.minZ = n.maxZ = z[n.point];
+        n.merge(n.left);
+        n.merge(n.right);
+    }
+    
+    /**DEBUGGING TOOLS**/
+    /**ITERATIVE FUNCTION TO TRAVERSE BREADTH FIRST**/
+    public void iterativeLevelOrder()
+    {
+        System.out.println("Iterative Level-Order");
+        
+        //create array queue, the widest level is at most half the points
+        queue.ArrayQueue<TreeNode> arrayQueue = new queue.ArrayQueue<TreeNode>(x.length/2 + 1);
+        
+        //start at root
+        TreeNode n = root;
+        arrayQueue.enqueue(n);
+        
+        while(!arrayQueue.isEmpty())
+        {
+            //remove and print out data
+            n = arrayQueue.dequeue();
+            System.out.println("X:" + x[n.point] + " " + "Y:" + y[n.point] + " " + "Z:" + z[n.point]);
+            
+            if(n != null)
+            {
+                //traverse left sub tree
+                if(n.left!=null)
+                {
+                    arrayQueue.enqueue(n.left);
+                }
+                //traverse right sub tree
+                if(n.right!=null)
+                {
+                    arrayQueue.enqueue(n.right);
+                }
+            }
+        }
+        System.out.println();
+
+    }
+    
+    /**DRIVER METHOD FOR PREORDER TRAVERSAL**/
+    public void preOrder()
+    {
+        System.out.println("Pre-Order");
+        preOrder(root);
+        System.out.println();
+    }
+    
+    /**FUNCTION TO TRAVERSE BY ROOT, LEFT, RIGHT**/
+    private void preOrder(TreeNode n)
+    {
+        if(n != null)
+        {
+            System.out.print("X:" + x[n.point] + " " + "Y:" + y[n.point] + " " + "Z:" + z[n.point]);
+            preOrder(n.left);
+            preOrder(n.right);
+        }
+    }
+    
+    /**KD TREE NODE THAT TAKES IN A POINT**/
+    private class TreeNode{
+        /**Class Member Variables**/
+        private int point;
+        private TreeNode left;
+        private TreeNode right;
+        private int type;
+        //bounding box of every target in this subtree
+        private double minX, maxX, minY, maxY, minZ, maxZ;
+
+        /**CONSTRUCTOR**/
+        public TreeNode(int pointParameter, TreeNode leftParameter, TreeNode rightParameter, int typeParameter){
+            point = pointParameter;
+            left = leftParameter;
+            right = rightParameter;
+            type = typeParameter;
+        }
+        
+        /**FUNCTION TO GROW THE BOUNDING BOX BY A CHILD'S**/
+        void merge(TreeNode child){
+            if(child == null) return;
+            minX = Math.min(minX, child.minX);
+            maxX = Math.max(maxX, child.maxX);
+            minY = Math.min(minY, child.minY);
+            maxY = Math.max(maxY, child.maxY);
+            minZ = Math.min(minZ, child.minZ);
+            maxZ = Math.max(maxZ, child.maxZ);
+        }
+        
+        /**FUNCTION TO RETURN THE SQUARE DISTANCE FROM A POINT TO THE BOUNDING BOX (0 IF INSIDE)**/
+        double squareDistanceToBox(double px, double py, double pz){
+            double x = Math.max(Math.max(minX - px, px - maxX), 0);
+            double y = Math.max(Math.max(minY - py, py - maxY), 0);
+            double z = Math.max(Math.max(minZ - pz, pz - maxZ), 0);
+            return x*x + y*y + z*z;
+        }
+    }
+    
+    /**COMPARATOR TO COMPARE X VALUES (THEN Y, THEN Z TO BREAK TIES)**/
+    public class XComparator implements Comparator<Integer>{
+        public int compare(Integer p1, Integer p2) {
+            if(x[p1] < x[p2]) return -1;//p1's x value is less
+            if(x[p2] < x[p1]) return 1;//p2's x value is less
+            if(y[p1] < y[p2]) return -1;
+            if(y[p2] < y[p1]) return 1;
+            if(z[p1] < z[p2]) return -1;
+            if(z[p2] < z[p1]) return 1;
+            return 0;//same spot
+        }
+    }
+    
+    /**COMPARATOR TO COMPARE Y VALUES (THEN Z, THEN X TO BREAK TIES)**/
+    public class YComparator implements Comparator<Integer>{
+        public int compare(Integer p1, Integer p2) {
+            if(y[p1] < y[p2]) return -1;//p1's y value is less
+            if(y[p2] < y[p1]) return 1;//p2's y value is less
+            if(z[p1] < z[p2]) return -1;
+            if(z[p2] < z[p1]) return 1;
+            if(x[p1] < x[p2]) return -1;
+            if(x[p2] < x[p1]) return 1;
+            return 0;//same spot
+        }
+    }
+    
+    /**COMPARATOR TO COMPARE Z VALUES (THEN X, THEN Y TO BREAK TIES)**/
+    public class ZComparator implements Comparator<Integer>{
+        public int compare(Integer p1, Integer p2) {
+            if(z[p1] < z[p2]) return -1;//p1's z value is less
+            if(z[p2] < z[p1]) return 1;//p2's z value is less
+            if(x[p1] < x[p2]) return -1;
+            if(x[p2] < x[p1]) return 1;
+            if(y[p1] < y[p2]) return -1;
+            if(y[p2] < y[p1]) return 1;
+            return 0;//same spot
+        }
+    }
+}
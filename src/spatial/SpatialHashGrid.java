@@ -0,0 +1,360 @@
+package spatial;
+
+import java.util.*;
+
+/**
+ * Uniform grid over all of 3D space, hashed into a fixed number of buckets. Space is cut into cubes of cellSize and
+ * every id sits in the bucket its cube hashes to. A bucket is a doubly linked list kept in three int arrays
+ * (head, next, prev), so:
+ *
+ *      1. insert -- link the id in at the head of its bucket, O(1)
+ *      2. move   -- only touches the lists if the id changed cube, O(1)
+ *      3. remove -- unlink the id, O(1)
+ *
+ * and nothing has to be rebuilt when points move. This is the best fit when the world is a bounded box and all the
+ * points are the same size, so one cell size suits every query. needsRebuild() is never true, the grid grows its
+ * table by itself when it gets too full.
+ *
+ * Cubes that hash to the same bucket share a list, so every id also keeps the cube it is in and a query only takes an
+ * id from a bucket when the id's cube is the cube being looked at. That way no id is found twice even when the cubes
+ * a query covers wrap around the table. Queries that would cover more cubes than there are ids just look at every id.
+ *
+ * An outer class can then call on (directly, or through its own Query from newQuery() on other threads):
+ *
+ *      1. neighbors
+ *
+ *      Which will hand every id in a radius the user specifies to an IdVisitor.
+ *
+ *      2. sweep
+ *
+ *      Which will return every id a moving sphere touches along a segment, in time of impact order.
+ */
+public class SpatialHashGrid implements SpatialIndex3D
+{
+    /**Class Member Variables**/
+    //side of a cube and its inverse
+    double cellSize;
+    double inverseCellSize;
+
+    //first id in every bucket (-1 if empty), table length is a power of two
+    int[] head;
+    int mask;
+
+    //per id list links, cube and position
+    int[] next, prev;
+    int[] cellX, cellY, cellZ;
+    double[] posX, posY, posZ;
+    boolean[] alive;
+
+    //highest id ever inserted + 1 and how many are still in the grid
+    int size;
+    int liveCount;
+
+    //query used by the single threaded helpers
+    private GridQuery query = new GridQuery();
+
+    /**CONSTRUCTOR, cellSize SHOULD BE ABOUT THE DIAMETER OF A TYPICAL QUERY**/
+    public SpatialHashGrid(double cellSize){
+        if(!(cellSize > 0)){
+            throw new IllegalArgumentException("cell size must be positive: " + cellSize);
+        }
+        this.cellSize = cellSize;
+        inverseCellSize = 1/cellSize;
+        allocate(16);
+        head = new int[16];
+        mask = 15;
+        Arrays.fill(head, -1);
+    }
+
+    /**FUNCTION TO PUT IDS 0..n-1 IN THE GRID FROM SCRATCH**/
+    public void build(double[] x, double[] y, double[] z, int n){
+        //empty every bucket and forget every id
+        Arrays.fill(head, -1);
+        Arrays.fill(alive, 0, size, false);
+        size = 0;
+        liveCount = 0;
+
+        //room for every id and a table about twice as big as the number of ids
+        if(next.length < n){
+            allocate(n);
+        }
+        if(head.length < 2*n){
+            resize(2*n);
+        }
+        for(int id = 0; id < n; id++){
+            insert(id, x[id], y[id], z[id]);
+        }
+    }
+
+    /**FUNCTION TO MOVE EVERY ID STILL IN THE GRID TO ITS NEW POSITION**/
+    public void update(double[] x, double[] y, double[] z){
+        for(int id = 0; id < size; id++){
+            if(alive[id]){
+                move(id, x[id], y[id], z[id]);
+            }
+        }
+    }
+
+    /**FUNCTION TO ADD ONE ID AT (x, y, z)**/
+    public void insert(int id, double x, double y, double z){
+        if(id < size && alive[id]){
+            throw new IllegalArgumentException("id already in the grid: " + id);
+        }
+
+        //grow per id arrays
+        if(id >= next.length){
+            allocate(Math.max(id + 1, 2*next.length));
+        }
+        if(id >= size){
+            size = id + 1;
+        }
+
+        //grow the table once there are more ids than buckets
+        if(liveCount + 1 > head.length){
+            resize(2*head.length);
+        }
+
+        posX[id] = x;
+        posY[id] = y;
+        posZ[id] = z;
+        cellX[id] = cell(x);
+        cellY[id] = cell(y);
+        cellZ[id] = cell(z);
+        alive[id] = true;
+        liveCount++;
+        link(id);
+    }
+
+    /**FUNCTION TO MOVE ONE ID, ITS BUCKET ONLY CHANGES IF IT CROSSED INTO ANOTHER CUBE**/
+    public void move(int id, double x, double y, double z){
+        posX[id] = x;
+        posY[id] = y;
+        posZ[id] = z;
+        int cx = cell(x), cy = cell(y), cz = cell(z);
+        if(cx != cellX[id] || cy != cellY[id] || cz != cellZ[id]){
+            unlink(id);
+            cellX[id] = cx;
+            cellY[id] = cy;
+            cellZ[id] = cz;
+            link(id);
+        }
+    }
+
+    /**FUNCTION TO TAKE AN ID OUT OF THE GRID**/
+    public void remove(int id){
+        if(id < size && alive[id]){
+            unlink(id);
+            alive[id] = false;
+            liveCount--;
+        }
+    }
+
+    /**FUNCTION TO SAY WHETHER BUILDING AGAIN WOULD HELP, NEVER FOR A GRID**/
+    public boolean needsRebuild(){
+        return false;
+    }
+
+    /**FUNCTION TO RETURN ONE MORE THAN THE HIGHEST ID THE GRID HAS HELD**/
+    public int size(){
+        return size;
+    }
+
+    /**FUNCTION TO RETURN HOW MANY IDS ARE IN THE GRID**/
+    public int liveCount(){
+        return liveCount;
+    }
+
+    /**FUNCTION TO RETURN THE CUBE A COORDINATE FALLS IN ON ONE AXIS**/
+    private int cell(double v){
+        return (int)Math.floor(v*inverseCellSize);
+    }
+
+    /**FUNCTION TO RETURN THE BUCKET OF A CUBE**/
+    private int bucket(int cx, int cy, int cz){
+        int h = cx*73856093 ^ cy*19349663 ^ cz*83492791;
+        return (h ^ h >>> 16) & mask;
+    }
+
+    /**FUNCTION TO PUT AN ID AT THE HEAD OF ITS CUBE'S BUCKET**/
+    private void link(int id){
+        int b = bucket(cellX[id], cellY[id], cellZ[id]);
+        int first = head[b];
+        next[id] = first;
+        prev[id] = -1;
+        if(first >= 0){
+            prev[first] = id;
+        }
+        head[b] = id;
+    }
+
+    /**FUNCTION TO TAKE AN ID OUT OF ITS CUBE'S BUCKET**/
+    private void unlink(int id){
+        int n = next[id];
+        int p = prev[id];
+        if(p >= 0){
+            next[p] = n;
+        }
+        else{
+            head[bucket(cellX[id], cellY[id], cellZ[id])] = n;
+        }
+        if(n >= 0){
+            prev[n] = p;
+        }
+    }
+
+    /**FUNCTION TO GROW THE PER ID ARRAYS TO capacity, KEEPING WHAT IS IN THEM**/
+    private void allocate(int capacity){
+        if(next == null){
+            next = new int[capacity];
+            prev = new int[capacity];
+            cellX = new int[capacity];
+            cellY = new int[capacity];
+            cellZ = new int[capacity];
+            posX = new double[capacity];
+            posY = new double[capacity];
+            posZ = new double[capacity];
+            alive = new boolean[capacity];
+            return;
+        }
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        cellX = Arrays.copyOf(cellX, capacity);
+        cellY = Arrays.copyOf(cellY, capacity);
+        cellZ = Arrays.copyOf(cellZ, capacity);
+        posX = Arrays.copyOf(posX, capacity);
+        posY = Arrays.copyOf(posY, capacity);
+        posZ = Arrays.copyOf(posZ, capacity);
+        alive = Arrays.copyOf(alive, capacity);
+    }
+
+    /**FUNCTION TO MAKE THE TABLE AT LEAST minBuckets BIG AND PUT EVERY LIVE ID BACK IN**/
+    private void resize(int minBuckets){
+        int buckets = Integer.highestOneBit(Math.max(minBuckets - 1, 1)) << 1;
+        head = new int[buckets];
+        mask = buckets - 1;
+        Arrays.fill(head, -1);
+        for(int id = 0; id < size; id++){
+            if(alive[id]){
+                link(id);
+            }
+        }
+    }
+
+    /**SINGLE THREADED HELPERS, THEY ALL SHARE ONE QUERY**/
+    /**FUNCTION TO HAND EVERY ID CLOSER THAN sqrt(squareRadius) TO visitor, RETURNS HOW MANY THERE WERE**/
+    public int neighbors(double px, double py, double pz, double squareRadius, IdVisitor visitor){
+        return query.neighbors(px, py, pz, squareRadius, visitor);
+    }
+
+    /**FUNCTION TO FIND EVERY ID A MOVING SPHERE TOUCHES, EARLIEST FIRST**/
+    public int sweep(double x0, double y0, double z0, double x1, double y1, double z1, double squareRadius, SweepHits hits){
+        return query.sweep(x0, y0, z0, x1, y1, z1, squareRadius, hits);
+    }
+
+    /**FUNCTION TO RETURN HOW MANY IDS THE LAST SINGLE THREADED CALL LOOKED AT (DEBUGGING)**/
+    public int visited(){
+        return query.visited;
+    }
+
+    /**FUNCTION TO MAKE A QUERY FOR ANOTHER THREAD**/
+    public GridQuery newQuery(){
+        return new GridQuery();
+    }
+
+    /**QUERIES ON THIS GRID**/
+    /**Both queries look at every cube the box around the sphere (or around the swept sphere) touches.**/
+    public class GridQuery implements SpatialIndex3D.Query{
+        //ids looked at by the last call
+        int visited;
+
+        //hits of the sweep being run
+        private SweepHits hits;
+
+        /**FUNCTION TO HAND EVERY NEIGHBOR OF GIVEN POINT TO visitor, RETURNS HOW MANY THERE WERE**/
+        /**Avoid square root with SQUARE RADIUS whenever possible. It's really expensive.**/
+        public int neighbors(double px, double py, double pz, double squareRadius, IdVisitor visitor){
+            double r = Math.sqrt(squareRadius);
+            visited = 0;
+            hits = null;
+            return scan(px - r, py - r, pz - r, px + r, py + r, pz + r, px, py, pz, 0, 0, 0, squareRadius, visitor);
+        }
+
+        /**FUNCTION TO FIND EVERY ID A SPHERE OF squareRadius TOUCHES WHILE MOVING FROM (x0,y0,z0) TO (x1,y1,z1)**/
+        public int sweep(double x0, double y0, double z0, double x1, double y1, double z1, double squareRadius, SweepHits hits){
+            double r = Math.sqrt(squareRadius);
+            hits.clear();
+            visited = 0;
+            this.hits = hits;
+            scan(Math.min(x0, x1) - r, Math.min(y0, y1) - r, Math.min(z0, z1) - r,
+                 Math.max(x0, x1) + r, Math.max(y0, y1) + r, Math.max(z0, z1) + r,
+                 x0, y0, z0, x1 - x0, y1 - y0, z1 - z0, squareRadius, null);
+            this.hits = null;
+            hits.sortByTime();
+            return hits.size;
+        }
+
+        /**FUNCTION TO TEST EVERY ID IN THE CUBES THE BOX (loX..hiZ) TOUCHES**/
+        /**With hits set it sweeps p + t*d, otherwise it hands ids within range of p to visitor.**/
+        private int scan(double loX, double loY, double loZ, double hiX, double hiY, double hiZ,
+                         double px, double py, double pz, double dx, double dy, double dz, double squareRadius, IdVisitor visitor){
+            int found = 0;
+            long x0 = cell(loX), y0 = cell(loY), z0 = cell(loZ);
+            long x1 = cell(hiX), y1 = cell(hiY), z1 = cell(hiZ);
+
+            //more cubes than ids, cheaper to look at every id
+            double cubes = (double)(x1 - x0 + 1)*(y1 - y0 + 1)*(z1 - z0 + 1);
+            if(cubes > liveCount){
+                for(int id = 0; id < size; id++){
+                    if(alive[id]){
+                        found += test(id, px, py, pz, dx, dy, dz, squareRadius, visitor);
+                    }
+                }
+                return found;
+            }
+
+            for(int cx = (int)x0; cx <= x1; cx++){
+                for(int cy = (int)y0; cy <= y1; cy++){
+                    for(int cz = (int)z0; cz <= z1; cz++){
+                        //only ids that really are in this cube, not ones in another cube with the same bucket
+                        for(int id = head[bucket(cx, cy, cz)]; id >= 0; id = next[id]){
+                            if(cellX[id] == cx && cellY[id] == cy && cellZ[id] == cz){
+                                found += test(id, px, py, pz, dx, dy, dz, squareRadius, visitor);
+                            }
+                        }
+                    }
+                }
+            }
+            return found;
+        }
+
+        /**FUNCTION TO TEST ONE ID, RETURNS 1 IF IT WAS A HIT**/
+        private int test(int id, double px, double py, double pz, double dx, double dy, double dz, double squareRadius, IdVisitor visitor){
+            visited++;
+            double ox = px - posX[id];
+            double oy = py - posY[id];
+            double oz = pz - posZ[id];
+
+            //sweep
+            if(hits != null){
+                double t = SweepHits.timeOfImpact(ox, oy, oz, dx, dy, dz, squareRadius);
+                if(t >= 0){
+                    hits.add(id, t);
+                    return 1;
+                }
+                return 0;
+            }
+
+            //distance formula without square root
+            if(ox*ox + oy*oy + oz*oz < squareRadius){
+                visitor.visit(id);
+                return 1;
+            }
+            return 0;
+        }
+
+        /**FUNCTION TO RETURN HOW MANY IDS THE LAST CALL LOOKED AT (DEBUGGING)**/
+        public int visited(){
+            return visited;
+        }
+    }
+}
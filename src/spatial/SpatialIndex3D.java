@@ -0,0 +1,56 @@
+package spatial;
+
+/**
+ * Interface for anything that can find points in 3D space near a point or along a path.
+ *
+ * Points are plain ids 0..n-1 with their coordinates in three caller owned arrays (x[id], y[id], z[id]), so an index
+ * does not know or care whether it holds targets, bombs, pickups or anything else.
+ *
+ * Life cycle:
+ *
+ *      1. build   -- index ids 0..n-1 where they are now
+ *      2. update  -- the points moved, ids stay the same
+ *      3. remove  -- an id is gone until the next build
+ *      4. needsRebuild -- the index has gotten slow enough after updates and removes that build should be called again
+ *
+ * Queries go through a Query, which holds whatever scratch space the index needs to walk itself. A Query must only
+ * be used by one thread at a time, but any number of threads can each use their own Query on the same index at the
+ * same time, as long as nobody calls build, update or remove while they do.
+ */
+public interface SpatialIndex3D
+{
+    /**FUNCTION TO INDEX IDS 0..n-1 AT (x[id], y[id], z[id])**/
+    void build(double[] x, double[] y, double[] z, int n);
+
+    /**FUNCTION TO MOVE EVERY ID THAT HAS NOT BEEN REMOVED TO ITS NEW (x[id], y[id], z[id])**/
+    void update(double[] x, double[] y, double[] z);
+
+    /**FUNCTION TO DROP AN ID, IT WILL NOT BE FOUND AGAIN UNTIL THE NEXT BUILD**/
+    void remove(int id);
+
+    /**FUNCTION TO RETURN HOW MANY IDS THE LAST BUILD WAS GIVEN**/
+    int size();
+
+    /**FUNCTION TO RETURN HOW MANY IDS HAVE NOT BEEN REMOVED**/
+    int liveCount();
+
+    /**FUNCTION TO SAY WHETHER BUILDING AGAIN WOULD BE WORTH IT**/
+    boolean needsRebuild();
+
+    /**FUNCTION TO MAKE A QUERY WITH ITS OWN SCRATCH SPACE, ONE PER THREAD**/
+    Query newQuery();
+
+    /**QUERIES ON ONE INDEX, NOT SAFE TO SHARE BETWEEN THREADS**/
+    public interface Query
+    {
+        /**FUNCTION TO HAND EVERY ID CLOSER THAN sqrt(squareRadius) TO (x, y, z) TO visitor, RETURNS HOW MANY THERE WERE**/
+        int neighbors(double x, double y, double z, double squareRadius, IdVisitor visitor);
+
+        /**FUNCTION TO FIND EVERY ID A SPHERE OF squareRadius TOUCHES MOVING FROM (x0,y0,z0) TO (x1,y1,z1)**/
+        /**Hits go in hits sorted by time of impact (0 at the start, 1 at the end). Returns how many there were.**/
+        int sweep(double x0, double y0, double z0, double x1, double y1, double z1, double squareRadius, SweepHits hits);
+
+        /**FUNCTION TO RETURN HOW MANY NODES OR CELLS THE LAST CALL LOOKED AT (DEBUGGING)**/
+        int visited();
+    }
+}
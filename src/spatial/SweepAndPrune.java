@@ -0,0 +1,642 @@
+package spatial;
+
+import java.util.*;
+
+/**
+ * Sweep and prune broad phase. Every box has a min and a max endpoint on each of the x, y and z axes, and each axis
+ * keeps its endpoints sorted. Two boxes overlap exactly when their intervals overlap on all three axes, and the set of
+ * overlapping pairs is kept from one commit to the next.
+ *
+ * Things only move a little every tick, so the sorted order barely changes. commit() fixes every axis with one
+ * insertion sort pass, which is close to linear when little has moved, and every swap of two endpoints is exactly one
+ * place where two intervals started or stopped overlapping:
+ *
+ *      1. a min moves below another box's max -- they might overlap now, check the other two axes and add the pair
+ *      2. a max moves below another box's min -- they do not overlap any more, remove the pair
+ *
+ * so the pair set is kept up to date with work proportional to how much the order changed, and a PairListener is told
+ * about every pair that was added or removed. Only pairs whose groups differ are kept (bombs against targets, not
+ * targets against targets).
+ *
+ * Boxes that come and go are not sorted in one swap at a time, that would carry every one of them the whole length of
+ * every axis:
+ *
+ *      1. removed  -- their pairs are found by scanning x from widest to the left of the box to its right end (no box
+ *                     that overlapped it can start further left), then their endpoints go in one compacting pass
+ *      2. added    -- their endpoints are sorted on their own and merged into every axis in one pass, after the
+ *                     insertion sort has moved the rest, and their pairs are found with the same window on x
+ *
+ * where widest is the widest any box is on x. After a big batch of adds commit() sorts every axis from scratch and finds
+ * every pair with one sweep along x instead, then tells the listener what changed.
+ *
+ * Boxes are handed out handles by add(). Every coordinate has to be finite.
+ */
+public class SweepAndPrune
+{
+    /**Class Member Variables**/
+    //box of every handle, lo[axis][handle] and hi[axis][handle]
+    double[][] lo = new double[3][0];
+    double[][] hi = new double[3][0];
+    int[] group = new int[0];
+    boolean[] alive = new boolean[0];
+
+    //handles given back by remove, reused by add
+    private int[] freeHandles = new int[0];
+    private int freeCount;
+    int handleCount;
+    int liveCount;
+
+    //sorted endpoints of every axis: value and (handle << 1 | 1 if max)
+    double[][] value = new double[3][0];
+    int[][] end = new int[3][0];
+    int endCount;
+
+    //boxes added and removed since the last commit
+    private int[] added = new int[0];
+    private int addedCount;
+    private int[] removed = new int[0];
+    private int removedCount;
+
+    //the widest any box was on x at the last commit, how far left of a box the boxes overlapping it can start
+    private double widest;
+
+    //pairs overlapping now, and scratch for full rebuilds
+    private PairSet pairs = new PairSet();
+    private PairSet rebuilt = new PairSet();
+
+    //handles overlapping the sweep line while rebuilding
+    private int[] active = new int[0];
+
+    //scratch for sorting an axis from scratch
+    private double[] sortValue = new double[0];
+    private int[] sortEnd = new int[0];
+
+    //endpoint swaps done by the last commit and whether it rebuilt from scratch (debugging)
+    int swaps;
+    boolean fullRebuild;
+
+    /**FUNCTION TO ADD A BOX, RETURNS ITS HANDLE**/
+    /**It does not overlap anything until the next commit.**/
+    public int add(int boxGroup, double minX, double minY, double minZ, double maxX, double maxY, double maxZ){
+        int h;
+        if(freeCount > 0){
+            h = freeHandles[--freeCount];
+        }
+        else{
+            h = handleCount++;
+            if(h == group.length){
+                grow(Math.max(16, 2*h));
+            }
+        }
+        group[h] = boxGroup;
+        alive[h] = true;
+        liveCount++;
+        set(h, minX, minY, minZ, maxX, maxY, maxZ);
+
+        //the next commit merges its endpoints in
+        if(addedCount == added.length){
+            added = Arrays.copyOf(added, Math.max(16, 2*addedCount));
+        }
+        added[addedCount++] = h;
+        return h;
+    }
+
+    /**FUNCTION TO MOVE OR RESIZE A BOX, THE PAIRS CHANGE ON THE NEXT COMMIT**/
+    public void update(int h, double minX, double minY, double minZ, double maxX, double maxY, double maxZ){
+        set(h, minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    /**FUNCTION TO TAKE A BOX OUT, ITS PAIRS GO AWAY AND ITS HANDLE IS FREED ON THE NEXT COMMIT**/
+    public void remove(int h){
+        if(!alive[h]){
+            return;
+        }
+        alive[h] = false;
+        liveCount--;
+        if(removedCount == removed.length){
+            removed = Arrays.copyOf(removed, Math.max(16, 2*removedCount));
+        }
+        removed[removedCount++] = h;
+    }
+
+    /**FUNCTION TO BRING EVERY AXIS AND THE PAIR SET UP TO DATE WITH THE BOXES, listener CAN BE null**/
+    public void commit(PairListener listener){
+        swaps = 0;
+
+        //removed boxes lose their pairs and their endpoints first, so nothing below sees them
+        if(removedCount > 0){
+            dropRemoved(listener);
+        }
+
+        //pull the boxes into the endpoints, and see how wide the widest box is now
+        double wide = 0;
+        for(int a = 0; a < 3; a++){
+            double[] v = value[a];
+            int[] e = end[a];
+            double[] l = lo[a];
+            double[] u = hi[a];
+            for(int i = 0; i < endCount; i++){
+                int h = e[i] >> 1;
+                v[i] = (e[i] & 1) == 0 ? l[h] : u[h];
+            }
+        }
+        for(int i = 0; i < endCount; i++){
+            int h = end[0][i] >> 1;
+            wide = Math.max(wide, hi[0][h] - lo[0][h]);
+        }
+
+        //boxes added since the last commit that were not removed again
+        int newCount = 0;
+        for(int i = 0; i < addedCount; i++){
+            int h = added[i];
+            if(alive[h]){
+                added[newCount++] = h;
+                wide = Math.max(wide, hi[0][h] - lo[0][h]);
+            }
+        }
+        addedCount = 0;
+        widest = wide;
+        ensureEndpoints(endCount + 2*newCount);
+
+        //every new box costs a scan of the window around it, a full sort is cheaper past about log n of them
+        int levels = 32 - Integer.numberOfLeadingZeros(endCount + 2*newCount);
+        fullRebuild = newCount > levels;
+        if(fullRebuild){
+            for(int a = 0; a < 3; a++){
+                for(int i = 0; i < newCount; i++){
+                    int h = added[i];
+                    value[a][endCount + 2*i] = lo[a][h];
+                    end[a][endCount + 2*i] = h << 1;
+                    value[a][endCount + 2*i + 1] = hi[a][h];
+                    end[a][endCount + 2*i + 1] = h << 1 | 1;
+                }
+            }
+            endCount += 2*newCount;
+            rebuild(listener);
+        }
+        else{
+            //the boxes that were there already, then the new ones merged in and paired up
+            for(int a = 0; a < 3; a++){
+                insertionSort(a, listener);
+            }
+            if(newCount > 0){
+                for(int a = 0; a < 3; a++){
+                    mergeAdded(a, newCount);
+                }
+                endCount += 2*newCount;
+                for(int i = 0; i < newCount; i++){
+                    pairUp(added[i], listener);
+                }
+            }
+        }
+
+        //free the removed handles
+        for(int i = 0; i < removedCount; i++){
+            if(freeCount == freeHandles.length){
+                freeHandles = Arrays.copyOf(freeHandles, Math.max(16, 2*freeCount));
+            }
+            freeHandles[freeCount++] = removed[i];
+        }
+        removedCount = 0;
+    }
+
+    /**FUNCTION TO DROP THE PAIRS AND THE ENDPOINTS OF EVERY BOX REMOVED SINCE THE LAST COMMIT**/
+    private void dropRemoved(PairListener listener){
+        //where every removed box was on x at the last commit, NaN for one that was never committed
+        for(int i = 0; i < removedCount; i++){
+            lo[0][removed[i]] = hi[0][removed[i]] = Double.NaN;
+        }
+        double[] v = value[0];
+        int[] e = end[0];
+        for(int i = 0; i < endCount; i++){
+            int h = e[i] >> 1;
+            if(!alive[h]){
+                if((e[i] & 1) == 0){
+                    lo[0][h] = v[i];
+                }
+                else{
+                    hi[0][h] = v[i];
+                }
+            }
+        }
+
+        //its pairs are with boxes that start in [lo - widest, hi] on x, the axis still has every box in it as it was
+        //at the last commit, the removed ones too, so a pair of two removed boxes is found as well
+        for(int r = 0; r < removedCount; r++){
+            int h = removed[r];
+            if(Double.isNaN(lo[0][h])){
+                continue;
+            }
+            double from = lo[0][h] - widest - margin(lo[0][h], widest);
+            for(int i = firstAtLeast(v, from); i < endCount && v[i] <= hi[0][h]; i++){
+                int other = e[i] >> 1;
+                if((e[i] & 1) == 0 && other != h && pairs.remove(h, other) && listener != null){
+                    listener.pairRemoved(Math.min(h, other), Math.max(h, other));
+                }
+            }
+        }
+
+        //one pass over every axis keeps the endpoints of live boxes, in order
+        int kept = 0;
+        for(int a = 0; a < 3; a++){
+            double[] va = value[a];
+            int[] ea = end[a];
+            kept = 0;
+            for(int i = 0; i < endCount; i++){
+                if(alive[ea[i] >> 1]){
+                    va[kept] = va[i];
+                    ea[kept++] = ea[i];
+                }
+            }
+        }
+        endCount = kept;
+    }
+
+    /**FUNCTION TO SORT THE ENDPOINTS OF THE FIRST n ADDED BOXES ON ONE AXIS AND MERGE THEM IN, FROM THE BACK, IN ONE PASS**/
+    private void mergeAdded(int a, int n){
+        //the new endpoints, sorted with an insertion sort (there are at most about log n boxes of them)
+        if(sortValue.length < 2*n){
+            sortValue = new double[Math.max(value[a].length, 2*n)];
+            sortEnd = new int[sortValue.length];
+        }
+        double[] nv = sortValue;
+        int[] ne = sortEnd;
+        for(int i = 0; i < 2*n; i++){
+            int h = added[i >> 1];
+            int endpoint = (i & 1) == 0 ? h << 1 : h << 1 | 1;
+            double key = (i & 1) == 0 ? lo[a][h] : hi[a][h];
+            int j = i - 1;
+            while(j >= 0 && before(key, endpoint, nv[j], ne[j])){
+                nv[j + 1] = nv[j];
+                ne[j + 1] = ne[j];
+                j--;
+            }
+            nv[j + 1] = key;
+            ne[j + 1] = endpoint;
+        }
+
+        //merge from the back, the old endpoints move up at most once
+        double[] v = value[a];
+        int[] e = end[a];
+        int i = endCount - 1, j = 2*n - 1, k = endCount + 2*n - 1;
+        while(j >= 0){
+            if(i >= 0 && before(nv[j], ne[j], v[i], e[i])){
+                v[k] = v[i];
+                e[k--] = e[i--];
+            }
+            else{
+                v[k] = nv[j];
+                e[k--] = ne[j--];
+            }
+        }
+    }
+
+    /**FUNCTION TO ADD EVERY PAIR A NEW BOX IS IN, FROM THE BOXES THAT START IN [lo - widest, hi] ON x**/
+    private void pairUp(int h, PairListener listener){
+        double[] v = value[0];
+        int[] e = end[0];
+        double from = lo[0][h] - widest - margin(lo[0][h], widest);
+        for(int i = firstAtLeast(v, from); i < endCount && v[i] <= hi[0][h]; i++){
+            int other = e[i] >> 1;
+            if((e[i] & 1) == 0 && other != h && overlaps(h, other) && pairs.add(h, other) && listener != null){
+                listener.pairAdded(Math.min(h, other), Math.max(h, other));
+            }
+        }
+    }
+
+    /**FUNCTION TO RETURN THE FIRST ENDPOINT OF AXIS x AT OR PAST key**/
+    private int firstAtLeast(double[] v, double key){
+        int low = 0, high = endCount;
+        while(low < high){
+            int mid = (low + high) >>> 1;
+            if(v[mid] < key){
+                low = mid + 1;
+            }
+            else{
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**FUNCTION TO RETURN A LITTLE EXTRA FOR A WINDOW, SO ROUNDING IN hi - lo CAN NOT LEAVE A BOX OUT OF IT**/
+    private static double margin(double at, double width){
+        return 1e-9*(Math.abs(at) + width + 1);
+    }
+
+    /**FUNCTION TO MAKE ROOM FOR n ENDPOINTS ON EVERY AXIS**/
+    private void ensureEndpoints(int n){
+        if(n > end[0].length){
+            for(int a = 0; a < 3; a++){
+                value[a] = Arrays.copyOf(value[a], Math.max(32, 2*n));
+                end[a] = Arrays.copyOf(end[a], Math.max(32, 2*n));
+            }
+        }
+    }
+
+    /**FUNCTION TO SORT ONE AXIS IN PLACE, ADDING AND REMOVING PAIRS AS ENDPOINTS PASS EACH OTHER**/
+    private void insertionSort(int a, PairListener listener){
+        double[] v = value[a];
+        int[] e = end[a];
+        for(int i = 1; i < endCount; i++){
+            double key = v[i];
+            int moving = e[i];
+            int j = i - 1;
+            while(j >= 0 && before(key, moving, v[j], e[j])){
+                int other = e[j];
+                swaps++;
+
+                //min moved below the other's max, they overlap on this axis now
+                if((moving & 1) == 0 && (other & 1) == 1){
+                    int h1 = moving >> 1, h2 = other >> 1;
+                    if(overlaps(h1, h2) && pairs.add(h1, h2) && listener != null){
+                        listener.pairAdded(Math.min(h1, h2), Math.max(h1, h2));
+                    }
+                }
+                //max moved below the other's min, they do not overlap on this axis any more
+                else if((moving & 1) == 1 && (other & 1) == 0){
+                    int h1 = moving >> 1, h2 = other >> 1;
+                    if(pairs.remove(h1, h2) && listener != null){
+                        listener.pairRemoved(Math.min(h1, h2), Math.max(h1, h2));
+                    }
+                }
+
+                v[j + 1] = v[j];
+                e[j + 1] = other;
+                j--;
+            }
+            v[j + 1] = key;
+            e[j + 1] = moving;
+        }
+    }
+
+    /**FUNCTION TO SAY WHETHER ENDPOINT 1 SORTS BEFORE ENDPOINT 2, MINS GO BEFORE MAXES AT THE SAME VALUE SO TOUCHING BOXES OVERLAP**/
+    private static boolean before(double v1, int e1, double v2, int e2){
+        return v1 < v2 || (v1 == v2 && (e1 & 1) < (e2 & 1));
+    }
+
+    /**FUNCTION TO SAY WHETHER TWO LIVE BOXES IN DIFFERENT GROUPS OVERLAP ON EVERY AXIS**/
+    private boolean overlaps(int h1, int h2){
+        if(group[h1] == group[h2] || !alive[h1] || !alive[h2]){
+            return false;
+        }
+        for(int a = 0; a < 3; a++){
+            if(lo[a][h1] > hi[a][h2] || lo[a][h2] > hi[a][h1]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**FUNCTION TO SORT EVERY AXIS FROM SCRATCH AND FIND EVERY PAIR WITH ONE SWEEP ALONG X**/
+    private void rebuild(PairListener listener){
+        for(int a = 0; a < 3; a++){
+            mergeSort(a);
+        }
+
+        //sweep x, every box is checked against the boxes whose x interval is open when it starts
+        rebuilt.clear();
+        if(active.length < handleCount){
+            active = new int[handleCount];
+        }
+        int activeCount = 0;
+        double[] v = value[0];
+        int[] e = end[0];
+        for(int i = 0; i < endCount; i++){
+            int h = e[i] >> 1;
+            if(!alive[h]){
+                continue;
+            }
+            if((e[i] & 1) == 0){
+                for(int k = 0; k < activeCount; k++){
+                    if(overlaps(h, active[k])){
+                        rebuilt.add(h, active[k]);
+                    }
+                }
+                active[activeCount++] = h;
+            }
+            else{
+                //take it out of the active list
+                for(int k = 0; k < activeCount; k++){
+                    if(active[k] == h){
+                        active[k] = active[--activeCount];
+                        break;
+                    }
+                }
+            }
+        }
+
+        //tell the listener what changed
+        if(listener != null){
+            for(int i = 0; i < pairs.keys.length; i++){
+                long key = pairs.keys[i];
+                if(key != 0 && !rebuilt.contains(key)){
+                    listener.pairRemoved((int)(key >>> 32), (int)key);
+                }
+            }
+            for(int i = 0; i < rebuilt.keys.length; i++){
+                long key = rebuilt.keys[i];
+                if(key != 0 && !pairs.contains(key)){
+                    listener.pairAdded((int)(key >>> 32), (int)key);
+                }
+            }
+        }
+        PairSet temp = pairs;
+        pairs = rebuilt;
+        rebuilt = temp;
+    }
+
+    /**BOTTOM UP MERGE SORT OF ONE AXIS, STABLE SO EQUAL ENDPOINTS KEEP THEIR ORDER**/
+    private void mergeSort(int a){
+        //same length as the axis, the two get swapped
+        if(sortValue.length != value[a].length){
+            sortValue = new double[value[a].length];
+            sortEnd = new int[value[a].length];
+        }
+        double[] v = value[a], tv = sortValue;
+        int[] e = end[a], te = sortEnd;
+        for(int width = 1; width < endCount; width *= 2){
+            for(int start = 0; start < endCount; start += 2*width){
+                int mid = Math.min(start + width, endCount);
+                int stop = Math.min(start + 2*width, endCount);
+                int i = start, j = mid, k = start;
+                while(i < mid && j < stop){
+                    if(before(v[j], e[j], v[i], e[i])){
+                        tv[k] = v[j];
+                        te[k++] = e[j++];
+                    }
+                    else{
+                        tv[k] = v[i];
+                        te[k++] = e[i++];
+                    }
+                }
+                while(i < mid){
+                    tv[k] = v[i];
+                    te[k++] = e[i++];
+                }
+                while(j < stop){
+                    tv[k] = v[j];
+                    te[k++] = e[j++];
+                }
+            }
+
+            //the merged run becomes the input of the next width
+            double[] sv = v; v = tv; tv = sv;
+            int[] se = e; e = te; te = se;
+        }
+        value[a] = v;
+        end[a] = e;
+        sortValue = tv;
+        sortEnd = te;
+    }
+
+    /**FUNCTION TO STORE A HANDLE'S BOX**/
+    private void set(int h, double minX, double minY, double minZ, double maxX, double maxY, double maxZ){
+        lo[0][h] = minX;
+        lo[1][h] = minY;
+        lo[2][h] = minZ;
+        hi[0][h] = maxX;
+        hi[1][h] = maxY;
+        hi[2][h] = maxZ;
+    }
+
+    /**FUNCTION TO GROW THE PER HANDLE ARRAYS**/
+    private void grow(int capacity){
+        for(int a = 0; a < 3; a++){
+            lo[a] = Arrays.copyOf(lo[a], capacity);
+            hi[a] = Arrays.copyOf(hi[a], capacity);
+        }
+        group = Arrays.copyOf(group, capacity);
+        alive = Arrays.copyOf(alive, capacity);
+    }
+
+    /**FUNCTION TO HAND EVERY OVERLAPPING PAIR TO visitor, SMALLER HANDLE FIRST**/
+    public void pairs(PairVisitor visitor){
+        long[] keys = pairs.keys;
+        for(int i = 0; i < keys.length; i++){
+            if(keys[i] != 0){
+                visitor.visit((int)(keys[i] >>> 32), (int)keys[i]);
+            }
+        }
+    }
+
+    /**FUNCTION TO RETURN HOW MANY PAIRS OVERLAP**/
+    public int pairCount(){
+        return pairs.size;
+    }
+
+    /**FUNCTION TO RETURN HOW MANY BOXES THERE ARE**/
+    public int liveCount(){
+        return liveCount;
+    }
+
+    /**FUNCTION TO RETURN HOW MANY ENDPOINT SWAPS THE LAST COMMIT DID (DEBUGGING)**/
+    public int swaps(){
+        return swaps;
+    }
+
+    /**INTERFACE FOR CALLERS THAT WANT TO HEAR ABOUT PAIRS AS THEY START AND STOP OVERLAPPING**/
+    public interface PairListener{
+        void pairAdded(int h1, int h2);
+        void pairRemoved(int h1, int h2);
+    }
+
+    /**INTERFACE FOR CALLERS THAT WANT EVERY OVERLAPPING PAIR**/
+    public interface PairVisitor{
+        void visit(int h1, int h2);
+    }
+
+    /**OPEN ADDRESSING SET OF PAIRS, (SMALLER HANDLE << 32 | BIGGER HANDLE), 0 MARKS AN EMPTY SLOT**/
+    /**Removing shifts the rest of the run back instead of leaving a tombstone, so it never has to be cleaned up.**/
+    static class PairSet{
+        long[] keys = new long[16];
+        int size;
+
+        /**FUNCTION TO ADD A PAIR, RETURNS FALSE IF IT WAS ALREADY THERE**/
+        boolean add(int h1, int h2){
+            long key = key(h1, h2);
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while(keys[i] != 0){
+                if(keys[i] == key){
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+
+            //keep it at most half full
+            if(++size*2 > keys.length){
+                long[] old = keys;
+                keys = new long[old.length*2];
+                mask = keys.length - 1;
+                for(long k : old){
+                    if(k != 0){
+                        int j = slot(k, mask);
+                        while(keys[j] != 0){
+                            j = (j + 1) & mask;
+                        }
+                        keys[j] = k;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**FUNCTION TO REMOVE A PAIR, RETURNS FALSE IF IT WAS NOT THERE**/
+        boolean remove(int h1, int h2){
+            long key = key(h1, h2);
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while(keys[i] != key){
+                if(keys[i] == 0){
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+
+            //shift back every later key in the run that would not be found past the hole
+            int hole = i;
+            i = (i + 1) & mask;
+            while(keys[i] != 0){
+                int home = slot(keys[i], mask);
+                if(((i - home) & mask) >= ((i - hole) & mask)){
+                    keys[hole] = keys[i];
+                    hole = i;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[hole] = 0;
+            size--;
+            return true;
+        }
+
+        /**FUNCTION TO SAY WHETHER A KEY IS IN THE SET**/
+        boolean contains(long key){
+            int mask = keys.length - 1;
+            for(int i = slot(key, mask); keys[i] != 0; i = (i + 1) & mask){
+                if(keys[i] == key){
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**FUNCTION TO EMPTY THE SET, KEEPING ITS TABLE**/
+        void clear(){
+            Arrays.fill(keys, 0);
+            size = 0;
+        }
+
+        /**FUNCTION TO PACK A PAIR INTO ONE KEY, SMALLER HANDLE IN THE HIGH HALF**/
+        static long key(int h1, int h2){
+            return (long)Math.min(h1, h2) << 32 | Math.max(h1, h2);
+        }
+
+        /**FUNCTION TO RETURN THE SLOT A KEY STARTS LOOKING IN**/
+        static int slot(long key, int mask){
+            long h = key*0x9E3779B97F4A7C15L;
+            return (int)(h >>> 32) & mask;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package spatial;
+
+import java.util.Arrays;
+
+/**
+ * Reusable answer for SpatialIndex3D.Query.sweep: ids[0, size) with their time of impact, earliest first.
+ *
+ * Keep one around and pass it in again, it only grows when a sweep hits more ids than ever before.
+ */
+public class SweepHits
+{
+    /**Class Member Variables**/
+    public int[] ids = new int[16];
+    public double[] times = new double[16];
+    public int size;
+
+    /**FUNCTION TO EMPTY THE BUFFER**/
+    public void clear()
+    {
+        size = 0;
+    }
+
+    /**FUNCTION TO ADD A HIT, GROWING IF NEEDED**/
+    public void add(int id, double time)
+    {
+        if(size == ids.length)
+        {
+            ids = Arrays.copyOf(ids, size*2);
+            times = Arrays.copyOf(times, size*2);
+        }
+        ids[size] = id;
+        times[size++] = time;
+    }
+
+    /**INSERTION SORT ON TIME, THERE ARE ONLY EVER A FEW HITS PER PATH**/
+    public void sortByTime()
+    {
+        for(int i = 1; i < size; i++)
+        {
+            int id = ids[i];
+            double time = times[i];
+            int j = i - 1;
+            while(j >= 0 && times[j] > time)
+            {
+                ids[j + 1] = ids[j];
+                times[j + 1] = times[j];
+                j--;
+            }
+            ids[j + 1] = id;
+            times[j + 1] = time;
+        }
+    }
+
+    /**FUNCTION TO RETURN THE TIME OF IMPACT A SPHERE MOVING ALONG p0 + t*d FIRST TOUCHES c, OR -1 IF IT NEVER DOES**/
+    /**(ox, oy, oz) is p0 - c. Solves |p0 + t*d - c|^2 = squareRadius for the first t in [0, 1].**/
+    public static double timeOfImpact(double ox, double oy, double oz, double dx, double dy, double dz, double squareRadius)
+    {
+        double c = ox*ox + oy*oy + oz*oz - squareRadius;
+
+        //already touching at the start
+        if(c < 0)
+            return 0;
+
+        double a = dx*dx + dy*dy + dz*dz;
+        double b = ox*dx + oy*dy + oz*dz;
+        double discriminant = b*b - a*c;
+
+        //not moving, moving away or missing
+        if(a == 0 || b >= 0 || discriminant < 0)
+            return -1;
+
+        double t = (-b - Math.sqrt(discriminant))/a;
+        return t <= 1 ? t : -1;
+    }
+}
@@ -0,0 +1,81 @@
+package game;
+
+import jdk.incubator.vector.*;
+
+/**
+ * EntityStore.move() for one axis written with the Vector API (jdk.incubator.vector, JDK 16 and up).
+ *
+ * It is its own source folder because it is compiled apart from the rest of the game, which targets Java 8:
+ *
+ *      javac --release 17 --add-modules jdk.incubator.vector -cp <game classes> -d <game classes> vector/game/VectorMotion.java
+ *
+ * (bench/pom.xml does this for the benchmarks), and the JVM has to be started with --add-modules jdk.incubator.vector.
+ * EntityStore loads it by name and keeps its own blocked loops when it can not, so the game runs the same without it.
+ *
+ * One pass over the arrays, SPECIES.length() entities at a time: save the position, then move and bounce (or bounce
+ * and move, for bombs) with the walls done as masks and blends instead of branches. Every lane does the same IEEE
+ * operations in the same order as the plain methods, vel*time first and then /scale, so the results are bit for bit
+ * the same. What is left over past the last whole vector goes through the scalar loop.
+ */
+public class VectorMotion implements EntityStore.AxisMover
+{
+    static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    public void moveAxis(double[] pos, double[] vel, double[] prev, int n, long time, double scale,
+                         double lo, double hi, double bounceDistance, boolean bounceFirst)
+    {
+        double t = time;
+        double hiBack = hi - bounceDistance, loBack = lo + bounceDistance;
+        int whole = SPECIES.loopBound(n);
+        int i = 0;
+        for(; i < whole; i += SPECIES.length())
+        {
+            DoubleVector p = DoubleVector.fromArray(SPECIES, pos, i);
+            DoubleVector v = DoubleVector.fromArray(SPECIES, vel, i);
+            p.intoArray(prev, i);
+            if(bounceFirst)
+            {
+                //bombs: bounce where they are, then move
+                VectorMask<Double> high = p.compare(VectorOperators.GE, hi);
+                VectorMask<Double> low = p.compare(VectorOperators.LE, lo).andNot(high);
+                v = v.blend(v.mul(-0.9), high.or(low));
+                p = p.blend(hiBack, high).blend(loBack, low);
+                p = p.add(v.mul(t).div(scale));
+            }
+            else
+            {
+                //targets: move, then bounce where they got to
+                p = p.add(v.mul(t).div(scale));
+                VectorMask<Double> high = p.compare(VectorOperators.GE, hi);
+                VectorMask<Double> low = p.compare(VectorOperators.LE, lo).andNot(high);
+                v = v.blend(v.mul(-0.9), high.or(low));
+                p = p.blend(hiBack, high).blend(loBack, low);
+            }
+            p.intoArray(pos, i);
+            v.intoArray(vel, i);
+        }
+
+        //the rest, one at a time
+        for(; i < n; i++)
+        {
+            double p = pos[i], v = vel[i];
+            prev[i] = p;
+            if(!bounceFirst)
+                p = p + v*time/scale;
+            if(p >= hi)
+            {
+                v *= -0.9;
+                p = hiBack;
+            }
+            else if(p <= lo)
+            {
+                v *= -0.9;
+                p = loBack;
+            }
+            if(bounceFirst)
+                p = p + v*time/scale;
+            pos[i] = p;
+            vel[i] = v;
+        }
+    }
+}